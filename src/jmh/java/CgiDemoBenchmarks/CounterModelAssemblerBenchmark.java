@@ -0,0 +1,62 @@
+package CgiDemoBenchmarks;
+
+import CgiDemo.Counter;
+import CgiDemo.CounterModelAssembler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Renders a whole collection per invocation, inside a fresh request as GET /counters would
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterModelAssemblerBenchmark {
+
+    @Param({"10000", "100000"})
+    private int size;
+
+    @Param({"true", "false"})
+    private boolean precomputeLinks;
+
+    private CounterModelAssembler assembler;
+    private List<Counter> counters;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        assembler = new CounterModelAssembler(precomputeLinks);
+        counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter("counter" + i, i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/counters");
+        request.setServerName("counters.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @TearDown(Level.Invocation)
+    public void endRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public void toModel(Blackhole blackhole) {
+        for (Counter counter : counters) {
+            EntityModel<Counter> model = assembler.toModel(counter);
+            blackhole.consume(model);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package CgiDemoBenchmarks;
+
+import CgiDemo.Counter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Serializes models shaped like the ones CounterModelAssembler returns, with the HAL setup Boot registers,
+// against the plain JSON, CBOR and Smile payloads negotiated without links. Payload sizes are printed at setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterSerializationBenchmark {
+
+    private static final String BASE = "http://counters.example.com/counters";
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private ObjectWriter plainWriter;
+    private ObjectWriter cborWriter;
+    private ObjectWriter smileWriter;
+    private EntityModel<Counter> counter;
+    private CollectionModel<EntityModel<Counter>> counters;
+    private List<Counter> plain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new Jackson2HalModule());
+        mapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+        writer = mapper.writer();
+        plainWriter = new ObjectMapper().writer();
+        cborWriter = new CBORMapper().writer();
+        smileWriter = new SmileMapper().writer();
+
+        List<EntityModel<Counter>> models = new ArrayList<>(size);
+        plain = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Counter next = new Counter("counter" + i, i);
+            models.add(model(next));
+            plain.add(next);
+        }
+        counter = models.get(0);
+        counters = CollectionModel.of(models, Link.of(BASE));
+
+        try {
+            System.out.printf("%n%d counters: hal %d bytes, json %d, cbor %d, smile %d%n", size,
+                    collectionModel().length, plainJson().length, cbor().length, smile().length);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Benchmark
+    public byte[] entityModel() throws JsonProcessingException {
+        return writer.writeValueAsBytes(counter);
+    }
+
+    @Benchmark
+    public byte[] collectionModel() throws JsonProcessingException {
+        return writer.writeValueAsBytes(counters);
+    }
+
+    @Benchmark
+    public byte[] plainJson() throws JsonProcessingException {
+        return plainWriter.writeValueAsBytes(plain);
+    }
+
+    @Benchmark
+    public byte[] cbor() throws JsonProcessingException {
+        return cborWriter.writeValueAsBytes(plain);
+    }
+
+    @Benchmark
+    public byte[] smile() throws JsonProcessingException {
+        return smileWriter.writeValueAsBytes(plain);
+    }
+
+    private static EntityModel<Counter> model(Counter counter) {
+        return EntityModel.of(counter,
+                Link.of(BASE + "/" + counter.getName()),
+                Link.of(BASE, "counters"));
+    }
+}
@@ -0,0 +1,90 @@
+package CgiDemoBenchmarks;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the configured engine against the embedded H2 database, without the web layer in front of it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterServiceBenchmark {
+
+    private static final String HOT = "hot";
+    private static final int SPREAD = 1024;
+
+    @Param({"jpa", "write-behind", "mapped", "wal"})
+    private String engine;
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private ConfigurableApplicationContext context;
+    private CounterService service;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(CgiDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--counter.engine=" + engine,
+                        "--counter.cache.enabled=" + cache,
+                        "--spring.datasource.generate-unique-name=true",
+                        "--logging.level.root=warn");
+        service = context.getBean(CounterService.class);
+        service.save(new Counter(HOT, 1));
+        for (int i = 0; i < SPREAD; i++) {
+            service.save(new Counter("counter" + i, 1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    // Gives every benchmark thread its own slice of counters so only the database is shared
+    @State(Scope.Thread)
+    public static class Names {
+
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private final int offset = threads.getAndIncrement() * 64;
+        private int next;
+
+        String next() {
+            return "counter" + ((offset + next++ % 64) % SPREAD);
+        }
+    }
+
+    @Benchmark
+    public void increaseCounter() {
+        service.increaseCounter(HOT);
+    }
+
+    @Benchmark
+    public Counter findById() {
+        return service.findById(HOT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void increaseContended() {
+        service.increaseCounter(HOT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void increaseSpread(Names names) {
+        service.increaseCounter(names.next());
+    }
+}
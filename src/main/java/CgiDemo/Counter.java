@@ -4,10 +4,15 @@ import java.util.Objects;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 
+// The count index serves the leaderboard and paging sorted by count
 @Entity
+@Table(indexes = @Index(name = "counter_count_idx", columnList = "count desc, name"))
 public class Counter {
-    private @Id String name;
+    // The Spring Data id lets the R2DBC repository of the reactive profile map the same class
+    private @Id @org.springframework.data.annotation.Id String name;
     private int count;
 
     Counter() {}
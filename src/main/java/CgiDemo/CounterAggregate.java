@@ -0,0 +1,5 @@
+package CgiDemo;
+
+// Number of counters in a range and the sum of their counts
+public record CounterAggregate(long counters, long sum) {
+}
@@ -0,0 +1,8 @@
+package CgiDemo;
+
+import java.util.List;
+import java.util.Map;
+
+// Response of a bulk increment: resulting count per counter (0 when removed) and unknown names
+public record CounterBatchResult(Map<String, Integer> counts, List<String> missing) {
+}
@@ -0,0 +1,98 @@
+package CgiDemo;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.context.annotation.Profile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Applies many counter deltas with JDBC batches inside one transaction. Rows are always touched in
+ * name order, so overlapping batches lock them in the same order and cannot deadlock.
+ */
+@Component
+@Profile("!reactive")
+public class CounterBatchWriter {
+
+    private static final String INCREMENT_SQL = "update counter set count = count + :delta where name = :name";
+    private static final String UPSERT_SQL = "merge into counter t"
+            + " using (values (cast(:name as varchar(255)), cast(:delta as integer))) s(name, delta) on t.name = s.name"
+            + " when matched then update set count = t.count + s.delta"
+            + " when not matched then insert (name, count) values (s.name, s.delta)";
+    private static final String SET_SQL = "merge into counter (name, count) key (name) values (:name, :count)";
+    private static final String DELETE_DEPLETED_SQL = "delete from counter where name = :name and count <= 0";
+    private static final String SELECT_COUNTS_SQL = "select name, count from counter where name in (:names)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final CounterMetrics metrics;
+
+    CounterBatchWriter(NamedParameterJdbcTemplate jdbcTemplate, CounterMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.metrics = metrics;
+    }
+
+    // Creates or replaces the counters with one JDBC batch
+    @Transactional
+    public void set(List<Counter> counters) {
+        if (counters.isEmpty()) {
+            return;
+        }
+        List<Counter> sorted = new ArrayList<>(counters);
+        sorted.sort(Comparator.comparing(Counter::getName));
+        jdbcTemplate.batchUpdate(SET_SQL, SqlParameterSourceUtils.createBatch(sorted));
+        metrics.dbRoundTrip();
+    }
+
+    /**
+     * Returns the new count of every counter the batch applied to; counters that dropped to zero
+     * or below are removed and reported as 0. Names missing from the result did not exist.
+     */
+    @Transactional
+    public Map<String, Integer> apply(SortedMap<String, Integer> deltas, boolean createMissing) {
+        if (deltas.isEmpty()) {
+            return Map.of();
+        }
+        List<MapSqlParameterSource> updates = new ArrayList<>(deltas.size());
+        List<MapSqlParameterSource> decrements = new ArrayList<>();
+        deltas.forEach((name, delta) -> {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("name", name).addValue("delta", delta);
+            updates.add(parameters);
+            if (delta < 0) {
+                decrements.add(parameters);
+            }
+        });
+
+        int[] updated = jdbcTemplate.batchUpdate(createMissing ? UPSERT_SQL : INCREMENT_SQL,
+                updates.toArray(MapSqlParameterSource[]::new));
+        metrics.dbRoundTrip();
+
+        Map<String, Integer> counts = new HashMap<>();
+        int i = 0;
+        for (String name : deltas.keySet()) {
+            if (updated[i++] != 0) {
+                counts.put(name, 0);
+            }
+        }
+        if (!decrements.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_DEPLETED_SQL, decrements.toArray(MapSqlParameterSource[]::new));
+            metrics.dbRoundTrip();
+        }
+
+        List<String> applied = new ArrayList<>(counts.keySet());
+        for (int from = 0; from < applied.size(); from += CounterRepository.IN_CLAUSE_CHUNK) {
+            List<String> chunk = applied.subList(from, Math.min(from + CounterRepository.IN_CLAUSE_CHUNK, applied.size()));
+            jdbcTemplate.query(SELECT_COUNTS_SQL, new MapSqlParameterSource("names", chunk),
+                    row -> { counts.put(row.getString("name"), row.getInt("count")); });
+            metrics.dbRoundTrip();
+        }
+        return counts;
+    }
+}
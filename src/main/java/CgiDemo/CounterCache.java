@@ -0,0 +1,112 @@
+package CgiDemo;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for single counter lookups. Missing counters are cached too, for a
+ * shorter time, and concurrent misses on the same name share one load.
+ */
+@Component
+public class CounterCache {
+
+    private final AsyncCache<String, Optional<Counter>> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    public CounterCache(@Value("${counter.cache.enabled:true}") boolean enabled,
+                        @Value("${counter.cache.max-size:10000}") long maxSize,
+                        @Value("${counter.cache.ttl:30s}") Duration ttl,
+                        @Value("${counter.cache.negative-ttl:1s}") Duration negativeTtl) {
+        this.cache = enabled ? Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new LookupExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .buildAsync() : null;
+    }
+
+    public Counter get(String name, Function<String, Optional<Counter>> loader) {
+        if (cache == null) {
+            return loader.apply(name).orElseThrow(() -> new CounterNotFoundException(name));
+        }
+
+        // The load runs on the calling thread after the future is published, not inside the map's
+        // compute lock, so a database round trip never pins a virtual thread to its carrier.
+        CompletableFuture<Optional<Counter>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<Counter>> cached = cache.asMap().putIfAbsent(name, load);
+        if (cached == null) {
+            misses.increment();
+            long start = System.nanoTime();
+            try {
+                // Cached values are copies so callers can never mutate a shared or managed instance.
+                load.complete(loader.apply(name).map(found -> new Counter(found.getName(), found.getCount())));
+            } catch (RuntimeException ex) {
+                loadFailures.increment();
+                load.completeExceptionally(ex);
+            } finally {
+                totalLoadTime.add(System.nanoTime() - start);
+            }
+            cached = load;
+        } else {
+            hits.increment();
+        }
+
+        try {
+            return cached.join().orElseThrow(() -> new CounterNotFoundException(name));
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    public void invalidate(String name) {
+        if (cache != null) {
+            cache.synchronous().invalidate(name);
+        }
+    }
+
+    public CacheStats stats() {
+        if (cache == null) {
+            return CacheStats.empty();
+        }
+        CacheStats evictions = cache.synchronous().stats();
+        long failures = loadFailures.sum();
+        return CacheStats.of(hits.sum(), misses.sum(), misses.sum() - failures, failures, totalLoadTime.sum(),
+                evictions.evictionCount(), evictions.evictionWeight());
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.synchronous().estimatedSize();
+    }
+
+    private record LookupExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, Optional<Counter>> {
+
+        @Override
+        public long expireAfterCreate(String name, Optional<Counter> counter, long currentTime) {
+            return counter.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String name, Optional<Counter> counter, long currentTime, long currentDuration) {
+            return expireAfterCreate(name, counter, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String name, Optional<Counter> counter, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package CgiDemo;
+
+/**
+ * Receives every change made through the counter API, after it has been applied. Callbacks run on
+ * the request thread, so implementations must be quick and should not allocate.
+ */
+public interface CounterChangeListener {
+
+    // The count moved by delta; a negative delta may also have removed the counter
+    default void counterChanged(String name, int delta) {
+    }
+
+    // The counter was created or its count replaced
+    default void counterSet(String name, int count) {
+    }
+
+    default void counterRemoved(String name) {
+    }
+}
@@ -0,0 +1,36 @@
+package CgiDemo;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fans counter changes out to every {@link CounterChangeListener} bean. The listeners are resolved
+ * once into an array, so publishing a change is a plain loop.
+ */
+@Component
+public class CounterChanges {
+
+    private final CounterChangeListener[] listeners;
+
+    CounterChanges(ObjectProvider<CounterChangeListener> listeners) {
+        this.listeners = listeners.orderedStream().toArray(CounterChangeListener[]::new);
+    }
+
+    public void changed(String name, int delta) {
+        for (CounterChangeListener listener : listeners) {
+            listener.counterChanged(name, delta);
+        }
+    }
+
+    public void set(String name, int count) {
+        for (CounterChangeListener listener : listeners) {
+            listener.counterSet(name, count);
+        }
+    }
+
+    public void removed(String name) {
+        for (CounterChangeListener listener : listeners) {
+            listener.counterRemoved(name);
+        }
+    }
+}
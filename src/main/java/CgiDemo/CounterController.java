@@ -1,68 +1,374 @@
 package CgiDemo;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import jakarta.servlet.http.HttpServletResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.context.annotation.Profile;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
 @RestController
+@Profile("!reactive")
 public class CounterController {
 
+    private static final int MAX_TOP = 1000;
+    private static final int MAX_RANGE_PAGE = 1000;
+
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+    static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
     private final CounterModelAssembler assembler;
-    private final CounterServiceImplemented service;
+    private final CounterService service;
+    private final ObjectWriter ndjsonWriter;
+    private final ObjectWriter cborWriter = new CBORMapper().writerFor(Counter.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private final ObjectWriter smileWriter = new SmileMapper().writerFor(Counter.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private final CounterMetrics metrics;
+    private final CounterVersions versions;
+    private final CounterChanges changes;
+    private final CounterIncrementQueue incrementQueue;
+    private final CounterPlainAdvice plainAdvice;
 
     @Autowired
-    CounterController(CounterModelAssembler assembler, CounterServiceImplemented service) {
+    CounterController(CounterModelAssembler assembler, CounterService service, ObjectMapper objectMapper,
+                      CounterMetrics metrics, CounterVersions versions, CounterChanges changes,
+                      CounterIncrementQueue incrementQueue, CounterPlainAdvice plainAdvice) {
         this.assembler = assembler;
         this.service = service;
-
+        this.metrics = metrics;
+        this.versions = versions;
+        this.changes = changes;
+        this.incrementQueue = incrementQueue;
+        this.plainAdvice = plainAdvice;
+        this.ndjsonWriter = objectMapper.writerFor(Counter.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
     }
 
 
     // Aggregate root
     // tag::get-aggregate-root[]
+    // Answers If-None-Match with 304 before the counters are loaded
     @GetMapping("/counters")
-    CollectionModel<EntityModel<Counter>> all() {
+    CollectionModel<EntityModel<Counter>> all(WebRequest request) {
+        if (notModified(request, versions.collectionEtag(), CollectionModel.class)) {
+            return null;
+        }
         List<EntityModel<Counter>> counters = service.findAll().stream()
                 .map(assembler::toModel).collect(Collectors.toList());
 
         return CollectionModel.of(counters,
-                linkTo(methodOn(CounterController.class).all()).withSelfRel());
+                linkTo(methodOn(CounterController.class).all(null)).withSelfRel());
     }
     // end::get-aggregate-root[]
 
+    // Selected instead of all() whenever any of page, size or sort is given, e.g. /counters?page=0&size=50&sort=count,desc.
+    // A mapping only matches when all of its params are present, so each parameter gets one.
+    @GetMapping(value = "/counters", params = "page")
+    PagedModel<EntityModel<Counter>> page(Pageable pageable, PagedResourcesAssembler<Counter> pagedAssembler) {
+        return pagedAssembler.toModel(service.findAll(pageable), assembler);
+    }
+
+    @GetMapping(value = "/counters", params = {"size", "!page"})
+    PagedModel<EntityModel<Counter>> pageOfSize(Pageable pageable, PagedResourcesAssembler<Counter> pagedAssembler) {
+        return page(pageable, pagedAssembler);
+    }
+
+    @GetMapping(value = "/counters", params = {"sort", "!page", "!size"})
+    PagedModel<EntityModel<Counter>> sortedPage(Pageable pageable, PagedResourcesAssembler<Counter> pagedAssembler) {
+        return page(pageable, pagedAssembler);
+    }
+
+    // Multi-get, e.g. /counters?names=a,b,c; unknown names are reported instead of failing the request
+    @GetMapping(value = "/counters", params = "names")
+    CounterLookupResult some(@RequestParam List<String> names) {
+        return lookup(names);
+    }
+
+    // Same as the multi-get, for name sets too large for a query string
+    @PostMapping("/counters/lookup")
+    CounterLookupResult lookup(@RequestBody List<String> names) {
+        Set<String> requested = new LinkedHashSet<>(names);
+        List<Counter> counters = service.findAllById(requested);
+        counters.forEach(counter -> requested.remove(counter.getName()));
+        return new CounterLookupResult(counters, List.copyOf(requested));
+    }
+
+    // Leaderboard, e.g. /counters/top?k=10 for the ten largest counters
+    @GetMapping("/counters/top")
+    CollectionModel<EntityModel<Counter>> top(@RequestParam(defaultValue = "10") int k) {
+        if (k < 1 || k > MAX_TOP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + MAX_TOP);
+        }
+        List<EntityModel<Counter>> counters = service.top(k).stream()
+                .map(assembler::toModel).collect(Collectors.toList());
+
+        return CollectionModel.of(counters,
+                linkTo(methodOn(CounterController.class).top(k)).withSelfRel());
+    }
+
+    // Counters under a prefix, or from (inclusive) to (exclusive), in name order and one keyset page at a
+    // time: /counters/range?prefix=service.&limit=100, then follow the next link, which continues after the last name
+    @GetMapping("/counters/range")
+    CollectionModel<EntityModel<Counter>> range(@RequestParam(required = false) String prefix,
+                                                @RequestParam(required = false) String from,
+                                                @RequestParam(required = false) String to,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_RANGE_PAGE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_RANGE_PAGE);
+        }
+        List<Counter> page = service.range(toRange(prefix, from, to), after, limit);
+        List<EntityModel<Counter>> counters = page.stream().map(assembler::toModel).collect(Collectors.toList());
+
+        // Expanded so the parameters left out do not show up as a URI template
+        CollectionModel<EntityModel<Counter>> model = CollectionModel.of(counters,
+                linkTo(methodOn(CounterController.class).range(prefix, from, to, after, limit)).withSelfRel().expand());
+        if (page.size() == limit) {
+            String last = page.get(limit - 1).getName();
+            model.add(linkTo(methodOn(CounterController.class).range(prefix, from, to, last, limit))
+                    .withRel(IanaLinkRelations.NEXT).expand());
+        }
+        return model;
+    }
+
+    // Number and sum of the counters under a prefix or in a range, e.g. /counters/aggregate?prefix=service.
+    @GetMapping("/counters/aggregate")
+    CounterAggregate aggregate(@RequestParam(required = false) String prefix,
+                               @RequestParam(required = false) String from,
+                               @RequestParam(required = false) String to) {
+        return service.aggregate(toRange(prefix, from, to));
+    }
 
+    // One JSON document per line, written while the rows are read. Also the default for clients that
+    // accept neither JSON nor one of the other formats, e.g. text/plain.
+    @GetMapping("/counters/export")
+    ResponseEntity<StreamingResponseBody> export() {
+        return exportNdjson();
+    }
+
+    // Declared explicitly so a client listing JSON before a binary type still gets NDJSON
+    @GetMapping(value = "/counters/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    ResponseEntity<StreamingResponseBody> exportNdjson() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = ndjsonWriter.createGenerator(out)) {
+                service.forEach(counter -> {
+                    try {
+                        ndjsonWriter.writeValue(generator, counter);
+                        generator.writeRaw('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+
+    // The same export as name,count CSV, e.g. for spreadsheets or POST /counters/import
+    @GetMapping(value = "/counters/export", produces = "text/csv")
+    ResponseEntity<StreamingResponseBody> exportCsv() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            StringBuilder line = new StringBuilder(CounterCsv.HEADER).append('\n');
+            service.forEach(counter -> {
+                CounterCsv.append(line, counter);
+                try {
+                    writer.append(line);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                line.setLength(0);
+            });
+            writer.append(line).flush();
+        };
+        return ResponseEntity.ok().contentType(new MediaType("text", "csv", StandardCharsets.UTF_8)).body(body);
+    }
+
+    // The same export as a sequence of CBOR values, which need no separator
+    @GetMapping(value = "/counters/export", produces = MediaType.APPLICATION_CBOR_VALUE)
+    ResponseEntity<StreamingResponseBody> exportCbor() {
+        return exportValues(cborWriter, MediaType.APPLICATION_CBOR);
+    }
+
+    @GetMapping(value = "/counters/export", produces = SMILE_VALUE)
+    ResponseEntity<StreamingResponseBody> exportSmile() {
+        return exportValues(smileWriter, SMILE);
+    }
+
+
+    // ?ttl=10m lets the counter expire ten minutes from now, ?idle=10m ten minutes after its last increment
     @PostMapping("/counters")
-    Counter newCounter(@RequestBody Counter newCounter) {
-        return service.save(newCounter);
+    Counter newCounter(@RequestBody Counter newCounter,
+                       @RequestParam(required = false) String ttl,
+                       @RequestParam(required = false) String idle) {
+        if (ttl != null && idle != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ttl cannot be combined with idle");
+        }
+        Counter saved;
+        if (ttl == null && idle == null) {
+            saved = service.save(newCounter);
+        } else {
+            Duration expiry = DurationStyle.detectAndParse(ttl != null ? ttl : idle);
+            if (expiry.isNegative() || expiry.isZero()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ttl must be positive");
+            }
+            saved = service.save(newCounter, expiry, idle != null);
+        }
+        changes.set(saved.getName(), saved.getCount());
+        return saved;
+    }
+
+    // Applies {"name": delta, ...} in one transaction, e.g. POST /counters/increments?create=true
+    @PostMapping("/counters/increments")
+    CounterBatchResult increaseCounters(@RequestBody Map<String, Integer> deltas,
+                                        @RequestParam(defaultValue = "false") boolean create) {
+        Map<String, Integer> counts = service.increaseCounters(deltas, create);
+        counts.forEach((name, count) -> {
+            if (count <= 0) {
+                changes.removed(name);
+            } else {
+                changes.changed(name, deltas.get(name));
+            }
+        });
+        List<String> missing = deltas.keySet().stream().filter(name -> !counts.containsKey(name)).sorted().toList();
+        return new CounterBatchResult(counts, missing);
     }
 
     // Single item
 
     @GetMapping("/counters/{name}")
-    EntityModel<Counter> one(@PathVariable String name) {
-        Counter counter = service.findById(name);
+    EntityModel<Counter> one(@PathVariable String name, WebRequest request) {
+        metrics.read(name);
+        // An expired counter is missing even though its version has not moved until it is swept
+        if (service.isExpired(name)) {
+            throw new CounterNotFoundException(name);
+        }
+        if (notModified(request, versions.etag(name), EntityModel.class)) {
+            return null;
+        }
+        Counter counter;
+        try {
+            counter = service.findById(name);
+        } catch (CounterNotFoundException ex) {
+            versions.missing(name);
+            throw ex;
+        }
         return assembler.toModel(counter);
     }
 
+    // With Prefer: respond-async the increment is queued and answered with 202 before it is applied;
+    // an increment of a counter that does not exist is then dropped instead of answered with 404
     @PutMapping("/counters/{name}")
-    void increaseCounter(@PathVariable String name) {
+    ResponseEntity<Void> increaseCounter(@PathVariable String name,
+                                         @RequestHeader(name = "Prefer", required = false) List<String> prefer) {
+        metrics.increment(name);
+        if (prefer != null && prefer.stream().anyMatch(preference -> preference.trim().equalsIgnoreCase("respond-async"))) {
+            incrementQueue.increment(name);
+            return ResponseEntity.accepted().header("Preference-Applied", "respond-async").build();
+        }
         service.increaseCounter(name);
+        changes.changed(name, 1);
+        return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/counters/{name}")
     void deleteCounter(@PathVariable String name) {
-        service.deleteCounter(name);
+        if (service.deleteCounter(name)) {
+            changes.removed(name);
+        } else {
+            changes.changed(name, -1);
+        }
+    }
+
+    // Spreads a hot counter over several rows, e.g. PUT /counters/hot/shards?count=8; count=1 merges it again
+    @PutMapping("/counters/{name}/shards")
+    void shardCounter(@PathVariable String name, @RequestParam int count) {
+        if (count < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be at least 1");
+        }
+        service.setShards(name, count);
     }
 
+    private ResponseEntity<StreamingResponseBody> exportValues(ObjectWriter writer, MediaType contentType) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = writer.createGenerator(out)) {
+                service.forEach(counter -> {
+                    try {
+                        writer.writeValue(generator, counter);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+
+    private static CounterRange toRange(String prefix, String from, String to) {
+        if (prefix == null) {
+            return new CounterRange(from, to);
+        }
+        if (from != null || to != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "prefix cannot be combined with from or to");
+        }
+        return CounterRange.prefix(prefix);
+    }
+
+    // Every representation has its own tag, predicted by the same negotiation that picks the converter;
+    // caches keep them apart by Accept
+    private boolean notModified(WebRequest request, String etag, Class<?> bodyType) {
+        if (request instanceof NativeWebRequest nativeRequest) {
+            HttpServletResponse response = nativeRequest.getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+            return request.checkNotModified(CounterVersions.representation(etag,
+                    plainAdvice.expectedRepresentation(nativeRequest, bodyType)));
+        }
+        return request.checkNotModified(etag);
+    }
 }
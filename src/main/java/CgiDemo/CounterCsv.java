@@ -0,0 +1,83 @@
+package CgiDemo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+// name,count lines as written by the CSV export and read by the CSV import; names are quoted when needed,
+// and a quoted name may span lines
+final class CounterCsv {
+
+    static final String HEADER = "name,count";
+
+    private CounterCsv() {
+    }
+
+    static void append(StringBuilder line, Counter counter) {
+        String name = counter.getName();
+        if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            line.append('"').append(name.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(name);
+        }
+        line.append(',').append(counter.getCount()).append('\n');
+    }
+
+    /**
+     * Reads the next record, which ends at a line break outside quotes; line breaks inside a quoted
+     * name are kept as they are. Returns null at the end of the input.
+     */
+    static String nextRecord(BufferedReader reader, long[] lines) throws IOException {
+        StringBuilder record = new StringBuilder();
+        boolean quoted = false;
+        int c;
+        while ((c = reader.read()) >= 0) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() == '\n') {
+                        if (quoted) {
+                            record.append('\r');
+                            c = '\n';
+                        }
+                    } else {
+                        reader.reset();
+                    }
+                }
+                lines[0]++;
+                if (!quoted) {
+                    return record.toString();
+                }
+            }
+            record.append((char) c);
+        }
+        return record.isEmpty() ? null : record.toString();
+    }
+
+    static Counter parse(String line) {
+        String name;
+        int comma;
+        if (line.startsWith("\"")) {
+            int close = line.lastIndexOf('"');
+            if (close == 0) {
+                throw new IllegalArgumentException("unterminated quoted name");
+            }
+            name = line.substring(1, close).replace("\"\"", "\"");
+            comma = close + 1;
+            if (comma >= line.length() || line.charAt(comma) != ',') {
+                throw new IllegalArgumentException("expected name,count");
+            }
+        } else {
+            comma = line.indexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("expected name,count");
+            }
+            name = line.substring(0, comma);
+        }
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("empty name");
+        }
+        return new Counter(name, Integer.parseInt(line.substring(comma + 1).strip()));
+    }
+}
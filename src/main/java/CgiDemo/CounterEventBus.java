@@ -0,0 +1,228 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes counter changes to Server-Sent Events subscribers. Changes only mark their counter dirty;
+ * once per interval the dirty counters are read and their current counts handed to the subscribers
+ * that want them, so a counter produces at most one event per interval however often it changes.
+ * Each subscriber has its own sender and a buffer of at most buffer-size counters; a subscriber
+ * that falls that far behind gets an overflow event and is disconnected, and is expected to reload
+ * and subscribe again.
+ */
+@Component
+@Profile("!reactive")
+public class CounterEventBus implements CounterChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterEventBus.class);
+
+    private final CounterService service;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong eventIds = new AtomicLong();
+
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService senders;
+
+    public CounterEventBus(CounterService service,
+                           CounterThreads threads,
+                           @Value("${counter.events.interval:250ms}") Duration interval,
+                           @Value("${counter.events.buffer-size:1000}") int bufferSize,
+                           @Value("${counter.events.timeout:30m}") Duration timeout) {
+        this.service = service;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        this.senders = Executors.newCachedThreadPool(threads.factory("counter-events"));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(threads.factory("counter-events-tick"));
+        long intervalMillis = interval.toMillis();
+        ticker.scheduleWithFixedDelay(this::tickQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribes to the given counters, or to all counters if names is empty. The current counts
+     * of named counters are sent right away.
+     */
+    public SseEmitter subscribe(Collection<String> names) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, names.isEmpty() ? null : Set.copyOf(names));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(ex -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        if (subscriber.names != null) {
+            subscriber.offer(current(subscriber.names));
+        }
+        return emitter;
+    }
+
+    @Override
+    public void counterChanged(String name, int delta) {
+        markDirty(name);
+    }
+
+    @Override
+    public void counterSet(String name, int count) {
+        markDirty(name);
+    }
+
+    @Override
+    public void counterRemoved(String name) {
+        markDirty(name);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdown();
+    }
+
+    private void markDirty(String name) {
+        // Nothing is tracked while nobody listens
+        if (!subscribers.isEmpty()) {
+            dirty.add(name);
+        }
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException ex) {
+            log.warn("Publishing counter changes failed", ex);
+        }
+    }
+
+    private void tick() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<>(dirty.size());
+        for (String name : dirty) {
+            dirty.remove(name);
+            names.add(name);
+        }
+        Map<String, Integer> counts = current(names);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.names == null) {
+                subscriber.offer(counts);
+            } else {
+                Map<String, Integer> wanted = new HashMap<>();
+                counts.forEach((name, count) -> {
+                    if (subscriber.names.contains(name)) {
+                        wanted.put(name, count);
+                    }
+                });
+                subscriber.offer(wanted);
+            }
+        }
+    }
+
+    // Current count per name, null for counters that no longer exist
+    private Map<String, Integer> current(Collection<String> names) {
+        Map<String, Integer> counts = new HashMap<>();
+        names.forEach(name -> counts.put(name, null));
+        service.findAllById(names).forEach(counter -> counts.put(counter.getName(), counter.getCount()));
+        return counts;
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Set<String> names;
+
+        // Guarded by this; a later count for the same counter replaces one that was not sent yet
+        private final Map<String, Integer> pending = new LinkedHashMap<>();
+        private boolean overflowed;
+        private boolean sending;
+
+        Subscriber(SseEmitter emitter, Set<String> names) {
+            this.emitter = emitter;
+            this.names = names;
+        }
+
+        void offer(Map<String, Integer> counts) {
+            if (counts.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                if (overflowed) {
+                    return;
+                }
+                pending.putAll(counts);
+                if (pending.size() > bufferSize) {
+                    pending.clear();
+                    overflowed = true;
+                }
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(this::send);
+        }
+
+        private void send() {
+            while (true) {
+                Map<String, Integer> batch;
+                boolean overflow;
+                synchronized (this) {
+                    if (pending.isEmpty() && !overflowed) {
+                        sending = false;
+                        return;
+                    }
+                    batch = new LinkedHashMap<>(pending);
+                    pending.clear();
+                    overflow = overflowed;
+                }
+                try {
+                    if (overflow) {
+                        emitter.send(SseEmitter.event().name("overflow")
+                                .data("More than " + bufferSize + " counters changed before they could be sent"));
+                        subscribers.remove(this);
+                        emitter.complete();
+                        return;
+                    }
+                    for (Map.Entry<String, Integer> entry : batch.entrySet()) {
+                        String id = Long.toString(eventIds.incrementAndGet());
+                        if (entry.getValue() == null) {
+                            emitter.send(SseEmitter.event().id(id).name("removed").data(Map.of("name", entry.getKey())));
+                        } else {
+                            emitter.send(SseEmitter.event().id(id).name("counter")
+                                    .data(new Counter(entry.getKey(), entry.getValue())));
+                        }
+                    }
+                } catch (IOException | IllegalStateException ex) {
+                    // The client went away; the emitter callbacks are not always invoked for that
+                    subscribers.remove(this);
+                    emitter.completeWithError(ex);
+                    return;
+                }
+            }
+        }
+    }
+}
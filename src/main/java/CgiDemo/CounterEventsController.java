@@ -0,0 +1,33 @@
+package CgiDemo;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+public class CounterEventsController {
+
+    private final CounterEventBus bus;
+
+    CounterEventsController(CounterEventBus bus) {
+        this.bus = bus;
+    }
+
+    // Server-Sent Events for all counters, or for some with /counters/changes?names=a,b
+    @GetMapping(value = "/counters/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter changes(@RequestParam(defaultValue = "") List<String> names) {
+        return bus.subscribe(names);
+    }
+
+    @GetMapping(value = "/counters/{name}/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter changes(@PathVariable String name) {
+        return bus.subscribe(List.of(name));
+    }
+}
@@ -0,0 +1,306 @@
+package CgiDemo;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Expiry of counters for the JPA engine. A counter expires at a fixed time, or after a time without
+ * increments (idle expiry); counters whose name matches one of the configured patterns get idle
+ * expiry when they are created. Deadlines are kept in memory, so an expired counter is missing as
+ * soon as its deadline passes, and in counter_expiry rows indexed by deadline, from which the
+ * sweeper deletes expired counters in batches. Increments move an idle deadline in memory and write
+ * it back once the stored one is less than half the idle time away, so a restart after a crash
+ * brings a deadline forward by at most that much; shutdown writes back all of them. A counter is
+ * only deleted together with an expiry row that is still due, so a counter that was re-created or
+ * incremented while the sweeper looked at it stays. Like the shards, this assumes a single
+ * instance per database.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "jpa", matchIfMissing = true)
+public class CounterExpiries {
+
+    private static final String LOAD_SQL = "select name, expires_at, idle_millis from counter_expiry";
+    private static final String MERGE_SQL = "merge into counter_expiry (name, expires_at, idle_millis) key (name)"
+            + " values (?, ?, ?)";
+    private static final String DELETE_SQL = "delete from counter_expiry where name = ?";
+    private static final String DELETE_DUE_SQL = "delete from counter_expiry where name = ? and expires_at <= ?";
+    private static final String DUE_SQL = "select name from counter_expiry where expires_at <= ?"
+            + " order by expires_at limit ?";
+    private static final String POSTPONE_SQL = "update counter_expiry set expires_at = greatest(expires_at, ?)"
+            + " where name = ?";
+    private static final String DELETE_COUNTER_SQL = "delete from counter where name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactions;
+    private final CounterMetrics metrics;
+    private final Clock clock;
+    private final List<IdlePattern> patterns;
+
+    private final Map<String, Deadline> deadlines = new ConcurrentHashMap<>();
+
+    CounterExpiries(JdbcTemplate jdbcTemplate,
+                    TransactionTemplate transactions,
+                    CounterMetrics metrics,
+                    ObjectProvider<Clock> clock,
+                    @Value("${counter.expiry.patterns:}") String patterns) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactions = transactions;
+        this.metrics = metrics;
+        this.clock = clock.getIfAvailable(Clock::systemUTC);
+        this.patterns = IdlePattern.parse(patterns);
+    }
+
+    @PostConstruct
+    void load() {
+        jdbcTemplate.query(LOAD_SQL, row -> {
+            deadlines.put(row.getString(1), new Deadline(row.getLong(2), row.getLong(3)));
+        });
+        metrics.dbRoundTrip();
+    }
+
+    // Writes back the idle deadlines that moved since they were stored
+    @PreDestroy
+    void store() {
+        List<Object[]> moved = new ArrayList<>();
+        deadlines.forEach((name, deadline) -> {
+            if (deadline.expiresAt > deadline.storedAt) {
+                moved.add(new Object[] {deadline.expiresAt, name});
+            }
+        });
+        if (!moved.isEmpty()) {
+            jdbcTemplate.batchUpdate(POSTPONE_SQL, moved);
+            metrics.dbRoundTrip();
+        }
+    }
+
+    /**
+     * Lets the counter expire after ttl, or with idle after ttl without increments, replacing any
+     * previous expiry.
+     */
+    public void expire(String name, Duration ttl, boolean idle) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        store(name, ttl.toMillis(), idle ? ttl.toMillis() : 0);
+    }
+
+    // A counter was created or overwritten: it gets the expiry of its pattern, if any, instead of its previous one
+    public void created(String name) {
+        IdlePattern pattern = match(name);
+        if (pattern != null) {
+            store(name, pattern.idleMillis(), pattern.idleMillis());
+        } else {
+            forget(name);
+        }
+    }
+
+    // A counter is about to be incremented: an idle deadline starts over, and a counter matching a pattern gets
+    // its expiry. Called before the increment, so the sweeper either deleted the counter already or sees the
+    // new deadline; callers forget the expiry if the counter turns out to be missing.
+    public void touched(String name) {
+        Deadline deadline = deadlines.get(name);
+        if (deadline == null) {
+            IdlePattern pattern = match(name);
+            if (pattern != null) {
+                store(name, pattern.idleMillis(), pattern.idleMillis());
+            }
+        } else if (deadline.idleMillis > 0) {
+            long now = clock.millis();
+            long expiresAt = now + deadline.idleMillis;
+            deadline.expiresAt = expiresAt;
+            if (deadline.storedAt - now < deadline.idleMillis / 2) {
+                jdbcTemplate.update(POSTPONE_SQL, expiresAt, name);
+                metrics.dbRoundTrip();
+                deadline.storedAt = expiresAt;
+            }
+        }
+    }
+
+    public boolean isExpired(String name) {
+        Deadline deadline = deadlines.get(name);
+        return deadline != null && deadline.expiresAt <= clock.millis();
+    }
+
+    // The counters that have not expired; expired rows stay in the table until they are swept
+    public List<Counter> live(List<Counter> counters) {
+        if (deadlines.isEmpty()) {
+            return counters;
+        }
+        long now = clock.millis();
+        List<Counter> live = new ArrayList<>(counters.size());
+        for (Counter counter : counters) {
+            Deadline deadline = deadlines.get(counter.getName());
+            if (deadline == null || deadline.expiresAt > now) {
+                live.add(counter);
+            }
+        }
+        return live;
+    }
+
+    // Drops the expiry of a counter that was deleted or no longer expires
+    public void forget(String name) {
+        Deadline deadline = deadlines.get(name);
+        if (deadline != null) {
+            jdbcTemplate.update(DELETE_SQL, name);
+            metrics.dbRoundTrip();
+            CounterTransactions.afterCommit(() -> deadlines.remove(name, deadline));
+        }
+    }
+
+    // Deletes the counter right away if it has expired, e.g. before it is created again; returns whether it was
+    public boolean purge(String name) {
+        Deadline deadline = deadlines.get(name);
+        long now = clock.millis();
+        if (deadline == null || deadline.expiresAt > now) {
+            return false;
+        }
+        if (delete(List.of(name), now).isEmpty()) {
+            return false;
+        }
+        CounterTransactions.afterCommit(() -> deadlines.remove(name, deadline));
+        return true;
+    }
+
+    /**
+     * Deletes the counters that are due, at most batchSize per transaction, and hands their names to
+     * removed. Rows whose idle deadline moved in the meantime are postponed instead. Returns the
+     * number of counters deleted.
+     */
+    public int sweep(int batchSize, Consumer<String> removed) {
+        int deleted = 0;
+        List<String> due;
+        do {
+            long now = clock.millis();
+            due = jdbcTemplate.queryForList(DUE_SQL, String.class, now, batchSize);
+            metrics.dbRoundTrip();
+            Map<String, Deadline> expired = new HashMap<>();
+            List<Object[]> postponed = new ArrayList<>();
+            List<Object[]> forgotten = new ArrayList<>();
+            for (String name : due) {
+                Deadline deadline = deadlines.get(name);
+                if (deadline == null) {
+                    // forgotten while the row was read; the counter itself stays
+                    forgotten.add(new Object[] {name});
+                } else if (deadline.expiresAt > now) {
+                    long expiresAt = deadline.expiresAt;
+                    postponed.add(new Object[] {expiresAt, name});
+                    deadline.storedAt = expiresAt;
+                } else {
+                    expired.put(name, deadline);
+                }
+            }
+            if (!postponed.isEmpty()) {
+                jdbcTemplate.batchUpdate(POSTPONE_SQL, postponed);
+                metrics.dbRoundTrip();
+            }
+            if (!forgotten.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_SQL, forgotten);
+                metrics.dbRoundTrip();
+            }
+            if (!expired.isEmpty()) {
+                for (String name : delete(new ArrayList<>(expired.keySet()), now)) {
+                    deadlines.remove(name, expired.get(name));
+                    removed.accept(name);
+                    deleted++;
+                }
+            }
+        } while (due.size() == batchSize);
+        return deleted;
+    }
+
+    // Deletes the expiry rows still due at now and, in the same transaction, their counters; returns those names.
+    // A row that was re-created, forgotten or postponed in the meantime is left alone, and so is its counter.
+    private List<String> delete(List<String> names, long now) {
+        List<Object[]> due = names.stream().map(name -> new Object[] {name, now}).toList();
+        List<String> deleted = transactions.execute(status -> {
+            int[] rows = jdbcTemplate.batchUpdate(DELETE_DUE_SQL, due);
+            List<String> expired = new ArrayList<>();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != 0) {
+                    expired.add(names.get(i));
+                }
+            }
+            if (!expired.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_COUNTER_SQL, expired.stream().map(name -> new Object[] {name}).toList());
+            }
+            return expired;
+        });
+        metrics.dbRoundTrip();
+        metrics.dbRoundTrip();
+        return deleted;
+    }
+
+    private void store(String name, long ttlMillis, long idleMillis) {
+        long expiresAt = clock.millis() + ttlMillis;
+        jdbcTemplate.update(MERGE_SQL, name, expiresAt, idleMillis);
+        metrics.dbRoundTrip();
+        deadlines.put(name, new Deadline(expiresAt, idleMillis));
+    }
+
+    private IdlePattern match(String name) {
+        for (IdlePattern pattern : patterns) {
+            if (pattern.matches(name)) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    private static final class Deadline {
+
+        volatile long expiresAt;
+        // The deadline in the counter_expiry row, which the sweeper and restarts go by
+        volatile long storedAt;
+        final long idleMillis;
+
+        Deadline(long expiresAt, long idleMillis) {
+            this.expiresAt = expiresAt;
+            this.storedAt = expiresAt;
+            this.idleMillis = idleMillis;
+        }
+    }
+
+    // name=duration or prefix*=duration, e.g. session.*=30m
+    record IdlePattern(String name, boolean prefix, long idleMillis) {
+
+        static List<IdlePattern> parse(String patterns) {
+            List<IdlePattern> parsed = new ArrayList<>();
+            for (String entry : patterns.split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int separator = entry.lastIndexOf('=');
+                if (separator < 1) {
+                    throw new IllegalArgumentException("Expected name=duration or prefix*=duration, got " + entry);
+                }
+                String name = entry.substring(0, separator).trim();
+                long idleMillis = DurationStyle.detectAndParse(entry.substring(separator + 1).trim()).toMillis();
+                boolean prefix = name.endsWith("*");
+                parsed.add(new IdlePattern(prefix ? name.substring(0, name.length() - 1) : name, prefix, idleMillis));
+            }
+            return List.copyOf(parsed);
+        }
+
+        boolean matches(String candidate) {
+            return prefix ? candidate.startsWith(name) : candidate.equals(name);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package CgiDemo;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// When one counter expires, in epoch milliseconds, and for idle expiry how far each increment pushes that
+// back; rows are written through CounterExpiries, the index lets the sweeper find due rows without a scan
+@Entity
+@Table(indexes = @Index(name = "counter_expiry_at_idx", columnList = "expires_at"))
+public class CounterExpiry {
+
+    private @Id String name;
+    private long expiresAt;
+    private long idleMillis;
+
+    CounterExpiry() {}
+}
@@ -0,0 +1,68 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Deletes expired counters every sweep interval, in batches, and reports them as removed
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "jpa", matchIfMissing = true)
+public class CounterExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterExpirySweeper.class);
+
+    private final CounterExpiries expiries;
+    private final CounterShards shards;
+    private final CounterCache cache;
+    private final CounterChanges changes;
+    private final int batchSize;
+    private final ScheduledExecutorService sweeper;
+
+    CounterExpirySweeper(CounterExpiries expiries,
+                         CounterShards shards,
+                         CounterCache cache,
+                         CounterChanges changes,
+                         CounterThreads threads,
+                         @Value("${counter.expiry.sweep-interval:1s}") Duration interval,
+                         @Value("${counter.expiry.batch-size:1000}") int batchSize) {
+        this.expiries = expiries;
+        this.shards = shards;
+        this.cache = cache;
+        this.changes = changes;
+        this.batchSize = batchSize;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threads.factory("counter-expiry"));
+        long intervalMillis = interval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int sweep() {
+        return expiries.sweep(batchSize, name -> {
+            shards.forget(name);
+            cache.invalidate(name);
+            changes.removed(name);
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException ex) {
+            log.warn("Sweeping expired counters failed, will retry", ex);
+        }
+    }
+}
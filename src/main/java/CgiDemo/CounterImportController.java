@@ -0,0 +1,30 @@
+package CgiDemo;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@Profile("!reactive")
+public class CounterImportController {
+
+    private final CounterImporter importer;
+
+    CounterImportController(CounterImporter importer) {
+        this.importer = importer;
+    }
+
+    // Bulk create or replace, streamed from NDJSON (as written by /counters/export) or name,count CSV
+    @PostMapping(value = "/counters/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    CounterImportResult importCounters(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                       InputStream body) throws IOException {
+        return contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? importer.importNdjson(body) : importer.importCsv(body);
+    }
+}
@@ -0,0 +1,5 @@
+package CgiDemo;
+
+// Response of a bulk import: how many counters were created or replaced
+public record CounterImportResult(long imported) {
+}
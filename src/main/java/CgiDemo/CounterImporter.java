@@ -0,0 +1,95 @@
+package CgiDemo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams counters from NDJSON or CSV into the counter service in batches of batch-size, reading one
+ * line at a time so an import of any size runs in constant memory. Every counter is created or
+ * replaced, as by POST /counters. Batches read before a malformed line stay imported.
+ */
+@Component
+@Profile("!reactive")
+public class CounterImporter {
+
+    private final CounterService service;
+    private final CounterChanges changes;
+    private final ObjectReader ndjsonReader;
+    private final int batchSize;
+
+    CounterImporter(CounterService service, CounterChanges changes, ObjectMapper objectMapper,
+                    @Value("${counter.import.batch-size:5000}") int batchSize) {
+        this.service = service;
+        this.changes = changes;
+        this.ndjsonReader = objectMapper.readerFor(Counter.class);
+        this.batchSize = batchSize;
+    }
+
+    public CounterImportResult importNdjson(InputStream in) throws IOException {
+        List<Counter> batch = new ArrayList<>(batchSize);
+        long imported = 0;
+        try (MappingIterator<Counter> counters = ndjsonReader.readValues(in)) {
+            while (counters.hasNextValue()) {
+                Counter counter = counters.nextValue();
+                if (counter.getName() == null || counter.getName().isEmpty()) {
+                    throw new IllegalArgumentException("Line " + counters.getCurrentLocation().getLineNr() + ": empty name");
+                }
+                batch.add(counter);
+                if (batch.size() == batchSize) {
+                    imported += flush(batch);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Line " + ex.getLocation().getLineNr() + ": " + ex.getOriginalMessage());
+        }
+        return new CounterImportResult(imported + flush(batch));
+    }
+
+    // name,count per record, a quoted name may span lines; a name,count header line is skipped
+    public CounterImportResult importCsv(InputStream in) throws IOException {
+        List<Counter> batch = new ArrayList<>(batchSize);
+        long imported = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        // Line breaks read so far, so a record starts on the line after them
+        long[] lines = {0};
+        String line;
+        for (long number = 1; (line = CounterCsv.nextRecord(reader, lines)) != null; number = lines[0] + 1) {
+            if (line.isBlank() || (number == 1 && line.strip().equalsIgnoreCase(CounterCsv.HEADER))) {
+                continue;
+            }
+            try {
+                batch.add(CounterCsv.parse(line));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Line " + number + ": " + ex.getMessage());
+            }
+            if (batch.size() == batchSize) {
+                imported += flush(batch);
+            }
+        }
+        return new CounterImportResult(imported + flush(batch));
+    }
+
+    private int flush(List<Counter> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        service.saveAll(batch);
+        batch.forEach(counter -> changes.set(counter.getName(), counter.getCount()));
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+}
@@ -0,0 +1,195 @@
+package CgiDemo;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Accepted but not yet applied increments for PUT /counters/{name} with Prefer: respond-async.
+ * Each counter name is hashed to one of a fixed number of bounded lanes, and each lane has a single
+ * worker, so the increments of a counter are applied in the order they were accepted. A worker
+ * takes whatever has queued up in its lane, coalesces it per counter and applies it with one
+ * increaseCounters call. Increments of counters that do not exist are dropped and counted.
+ */
+@Component
+@Profile("!reactive")
+public class CounterIncrementQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterIncrementQueue.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private final CounterService service;
+    private final CounterChanges changes;
+    private final int batchSize;
+    private final long retryMillis;
+    private final Duration retryAfter;
+
+    private final BlockingQueue<String>[] lanes;
+    private final ExecutorService workers;
+
+    // Enqueueing holds the read lock, so once close() has the write lock nothing more can be accepted
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public CounterIncrementQueue(CounterService service,
+                                 CounterChanges changes,
+                                 CounterThreads threads,
+                                 MeterRegistry registry,
+                                 @Value("${counter.async.workers:4}") int workers,
+                                 @Value("${counter.async.capacity:10000}") int capacity,
+                                 @Value("${counter.async.batch-size:1000}") int batchSize,
+                                 @Value("${counter.async.retry-interval:1s}") Duration retryInterval,
+                                 @Value("${counter.async.retry-after:1s}") Duration retryAfter) {
+        this.service = service;
+        this.changes = changes;
+        this.batchSize = batchSize;
+        this.retryMillis = retryInterval.toMillis();
+        this.retryAfter = retryAfter;
+        this.lanes = new BlockingQueue[workers];
+        this.workers = Executors.newFixedThreadPool(workers, threads.factory("counter-async"));
+        int laneCapacity = Math.max(1, capacity / workers);
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<String> lane = new ArrayBlockingQueue<>(laneCapacity);
+            lanes[i] = lane;
+            this.workers.execute(() -> drain(lane));
+        }
+
+        Gauge.builder("counter.async.queue.depth", this, CounterIncrementQueue::depth)
+                .description("Accepted asynchronous increments not yet applied")
+                .register(registry);
+        FunctionCounter.builder("counter.async.accepted", accepted, LongAdder::sum)
+                .description("Asynchronous increments accepted with 202")
+                .register(registry);
+        FunctionCounter.builder("counter.async.rejected", rejected, LongAdder::sum)
+                .description("Asynchronous increments rejected because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("counter.async.dropped", dropped, LongAdder::sum)
+                .description("Accepted asynchronous increments of counters that did not exist")
+                .register(registry);
+    }
+
+    /**
+     * Queues one increment of the named counter.
+     *
+     * @throws CounterQueueFullException if the counter's lane is full or the queue is shutting down
+     */
+    public void increment(String name) {
+        closeLock.readLock().lock();
+        try {
+            if (closed || !lanes[Math.floorMod(name.hashCode(), lanes.length)].offer(name)) {
+                rejected.increment();
+                throw new CounterQueueFullException(retryAfter);
+            }
+            accepted.increment();
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    public int depth() {
+        int depth = 0;
+        for (BlockingQueue<String> lane : lanes) {
+            depth += lane.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Stops accepting increments and waits for the workers to apply what is left in their lanes.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} asynchronous increments were not applied before shutdown", depth());
+        }
+    }
+
+    private void drain(BlockingQueue<String> lane) {
+        List<String> names = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                String first = lane.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && lane.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                names.add(first);
+                lane.drainTo(names, batchSize - 1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            Map<String, Integer> deltas = new TreeMap<>();
+            for (String name : names) {
+                deltas.merge(name, 1, Integer::sum);
+            }
+            names.clear();
+            if (!apply(deltas)) {
+                return;
+            }
+        }
+    }
+
+    // Retries a failed batch until it is applied, so accepted increments survive a database outage;
+    // returns false only if the worker was interrupted
+    private boolean apply(Map<String, Integer> deltas) {
+        while (true) {
+            try {
+                Map<String, Integer> counts = service.increaseCounters(deltas, false);
+                deltas.forEach((name, delta) -> {
+                    if (counts.containsKey(name)) {
+                        changes.changed(name, delta);
+                    } else {
+                        dropped.add(delta);
+                    }
+                });
+                return true;
+            } catch (RuntimeException ex) {
+                log.warn("Applying {} asynchronous increments failed, retrying", deltas.size(), ex);
+            }
+            try {
+                Thread.sleep(retryMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                log.warn("Gave up on asynchronous increments of {}", deltas.keySet());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package CgiDemo;
+
+import java.util.List;
+
+// Response of a multi-get: the counters that exist and the requested names that do not
+public record CounterLookupResult(List<Counter> counters, List<String> missing) {
+}
@@ -0,0 +1,59 @@
+package CgiDemo;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the request hot path. Everything here is a pre-allocated adder or sketch cell, so
+ * recording never allocates and the instrumentation can stay on under load. Endpoint and repository
+ * latencies come from Boot's http.server.requests and spring.data.repository.invocations timers.
+ */
+@Component
+public class CounterMetrics {
+
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder dbRoundTrips = new LongAdder();
+    private final HotCounterTracker increments;
+    private final HotCounterTracker reads;
+
+    public CounterMetrics(MeterRegistry registry,
+                          @Value("${counter.metrics.hot.top-n:10}") int topN,
+                          @Value("${counter.metrics.hot.sketch-width:4096}") int sketchWidth) {
+        this.increments = new HotCounterTracker(topN, sketchWidth);
+        this.reads = new HotCounterTracker(topN, sketchWidth);
+        FunctionCounter.builder("counter.not.found", notFound, LongAdder::sum)
+                .description("Requests for counters that do not exist")
+                .register(registry);
+        FunctionCounter.builder("counter.db.round.trips", dbRoundTrips, LongAdder::sum)
+                .description("SQL statements and JDBC batches sent to the database")
+                .register(registry);
+    }
+
+    public void notFound() {
+        notFound.increment();
+    }
+
+    public void dbRoundTrip() {
+        dbRoundTrips.increment();
+    }
+
+    public void increment(String name) {
+        increments.record(name);
+    }
+
+    public void read(String name) {
+        reads.record(name);
+    }
+
+    public HotCounterTracker increments() {
+        return increments;
+    }
+
+    public HotCounterTracker reads() {
+        return reads;
+    }
+}
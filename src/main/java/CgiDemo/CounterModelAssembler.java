@@ -1,19 +1,58 @@
 package CgiDemo;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.util.UriUtils;
+import org.springframework.context.annotation.Profile;
 
 @Component
+@Profile("!reactive")
 public class CounterModelAssembler implements RepresentationModelAssembler<Counter, EntityModel<Counter>> {
 
+    private static final String LINKS_ATTRIBUTE = CounterModelAssembler.class.getName() + ".links";
+
+    private final boolean precomputeLinks;
+
+    public CounterModelAssembler(@Value("${counter.links.precompute:true}") boolean precomputeLinks) {
+        this.precomputeLinks = precomputeLinks;
+    }
+
     @Override
     public EntityModel<Counter> toModel(Counter counter) {
+        if (!precomputeLinks) {
+            return EntityModel.of(counter,
+                    linkTo(methodOn(CounterController.class).one(counter.getName(), null)).withSelfRel(),
+                    linkTo(methodOn(CounterController.class).all(null)).withRel("counters"));
+        }
+
+        Link collection = collectionLink();
+        String self = collection.getHref() + "/" + UriUtils.encodePathSegment(counter.getName(), StandardCharsets.UTF_8);
+        return EntityModel.of(counter, Link.of(self, IanaLinkRelations.SELF), collection);
+    }
 
-        return EntityModel.of(counter,
-                linkTo(methodOn(CounterController.class).one(counter.getName())).withSelfRel(),
-                linkTo(methodOn(CounterController.class).all()).withRel("counters"));
+    // Building a link from the current request is the expensive part, so it is done once per request
+    // and every counter only appends its name. Forwarded headers are honoured as with linkTo.
+    private Link collectionLink() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        Link collection = request == null ? null
+                : (Link) request.getAttribute(LINKS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (collection == null) {
+            collection = linkTo(methodOn(CounterController.class).all(null)).withRel("counters");
+            if (request != null) {
+                request.setAttribute(LINKS_ATTRIBUTE, collection, RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+        return collection;
     }
 
 }
@@ -8,9 +8,16 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class CounterNotFoundAdvice {
 
+    private final CounterMetrics metrics;
+
+    CounterNotFoundAdvice(CounterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @ExceptionHandler(CounterNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     String counterNotFoundHandler(CounterNotFoundException ex) {
+        metrics.notFound();
         return ex.getMessage();
     }
 }
@@ -0,0 +1,9 @@
+package CgiDemo;
+
+import java.util.List;
+
+import org.springframework.hateoas.PagedModel;
+
+// Plain representation of a page of counters, without the links of the PagedModel
+public record CounterPage(List<Counter> counters, PagedModel.PageMetadata page) {
+}
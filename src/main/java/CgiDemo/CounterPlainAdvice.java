@@ -0,0 +1,170 @@
+package CgiDemo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.RepresentationModel;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Strips the HATEOAS links from counter models, leaving only the name/count data. Binary formats
+ * are always plain; JSON clients opt in with ?links=false. The ETag names the representation that
+ * was negotiated. The controller answers If-None-Match before building a body, so it asks here which
+ * representation the request will negotiate: the content negotiation manager and the message
+ * converters of Spring MVC are consulted the way the return value handler does.
+ */
+@RestControllerAdvice(assignableTypes = CounterController.class)
+@Profile("!reactive")
+public class CounterPlainAdvice implements ResponseBodyAdvice<Object> {
+
+    private static final List<MediaType> ALL_APPLICATION_TYPES = List.of(MediaType.ALL, new MediaType("application"));
+
+    private final ContentNegotiationManager negotiation;
+    // Looked up lazily, since the adapter collects this advice while it is created
+    private final ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter;
+    private final Map<Class<?>, List<MediaType>> producible = new ConcurrentHashMap<>();
+
+    CounterPlainAdvice(ContentNegotiationManager negotiation, ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter) {
+        this.negotiation = negotiation;
+        this.handlerAdapter = handlerAdapter;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return RepresentationModel.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType contentType,
+                                  Class<? extends HttpMessageConverter<?>> converterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body != null && response instanceof ServletServerHttpResponse servletResponse) {
+            HttpServletResponse servlet = servletResponse.getServletResponse();
+            String etag = servlet.getHeader(HttpHeaders.ETAG);
+            if (etag != null) {
+                servlet.setHeader(HttpHeaders.ETAG,
+                        CounterVersions.representation(etag, representation(contentType, linksOff(request))));
+            }
+        }
+        if (body == null || !isPlain(contentType, request)) {
+            return body;
+        }
+        if (body instanceof PagedModel<?> page) {
+            return new CounterPage(contents(page), page.getMetadata());
+        }
+        if (body instanceof CollectionModel<?> collection) {
+            return contents(collection);
+        }
+        if (body instanceof EntityModel<?> model) {
+            return model.getContent();
+        }
+        return body;
+    }
+
+    // The representation a body of the given type will be sent in, for answering a conditional request early
+    String expectedRepresentation(NativeWebRequest request, Class<?> bodyType) {
+        return representation(negotiate(request, bodyType), "false".equals(request.getParameter("links")));
+    }
+
+    // Follows AbstractMessageConverterMethodProcessor: the most specific of the accepted types that a
+    // converter can write, by quality; null if none is, in which case the request fails anyway
+    private MediaType negotiate(NativeWebRequest request, Class<?> bodyType) {
+        List<MediaType> acceptable;
+        try {
+            acceptable = negotiation.resolveMediaTypes(request);
+        } catch (HttpMediaTypeNotAcceptableException ex) {
+            return null;
+        }
+        List<MediaType> candidates = new ArrayList<>();
+        for (MediaType accepted : acceptable) {
+            for (MediaType type : producibleTypes(request, bodyType)) {
+                if (accepted.isCompatibleWith(type)) {
+                    MediaType produced = type.copyQualityValue(accepted);
+                    candidates.add(accepted.isLessSpecific(produced) ? produced : accepted);
+                }
+            }
+        }
+        MimeTypeUtils.sortBySpecificity(candidates);
+        for (MediaType candidate : candidates) {
+            if (candidate.isConcrete()) {
+                return candidate;
+            }
+            if (candidate.isPresentIn(ALL_APPLICATION_TYPES)) {
+                return MediaType.APPLICATION_OCTET_STREAM;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MediaType> producibleTypes(NativeWebRequest request, Class<?> bodyType) {
+        Set<MediaType> declared = (Set<MediaType>) request.getAttribute(
+                HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (declared != null && !declared.isEmpty()) {
+            return List.copyOf(declared);
+        }
+        return producible.computeIfAbsent(bodyType, type -> {
+            List<MediaType> types = new ArrayList<>();
+            for (HttpMessageConverter<?> converter : handlerAdapter.getObject().getMessageConverters()) {
+                if (converter.canWrite(type, null)) {
+                    types.addAll(converter.getSupportedMediaTypes(type));
+                }
+            }
+            return types;
+        });
+    }
+
+    // Names the representation of a counter model sent as contentType, for its ETag
+    static String representation(MediaType contentType, boolean linksOff) {
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(contentType)) {
+            return "cbor";
+        }
+        if (CounterController.SMILE.isCompatibleWith(contentType)) {
+            return "smile";
+        }
+        return linksOff ? "plain" : "hal";
+    }
+
+    private static boolean isPlain(MediaType contentType, ServerHttpRequest request) {
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(contentType) || CounterController.SMILE.isCompatibleWith(contentType)) {
+            return true;
+        }
+        return linksOff(request);
+    }
+
+    private static boolean linksOff(ServerHttpRequest request) {
+        return request instanceof ServletServerHttpRequest servletRequest
+                && "false".equals(servletRequest.getServletRequest().getParameter("links"));
+    }
+
+    private static List<Counter> contents(CollectionModel<?> collection) {
+        return collection.getContent().stream()
+                .map(item -> (Counter) ((EntityModel<?>) item).getContent())
+                .toList();
+    }
+}
@@ -0,0 +1,17 @@
+package CgiDemo;
+
+import java.time.Duration;
+
+public class CounterQueueFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public CounterQueueFullException(Duration retryAfter) {
+        super("Too many pending increments, retry later");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
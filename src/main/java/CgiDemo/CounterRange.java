@@ -0,0 +1,45 @@
+package CgiDemo;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+
+/**
+ * Counter names from inclusive to exclusive in natural String order; a null bound is open. A prefix
+ * is the range from the prefix up to the first string that sorts after every name starting with it.
+ */
+public record CounterRange(String from, String to) {
+
+    public static final CounterRange ALL = new CounterRange(null, null);
+
+    public static CounterRange prefix(String prefix) {
+        // Trailing Character.MAX_VALUE chars cannot be incremented, so the bound moves to the previous character
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        String to = end == 0 ? null : prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+        return new CounterRange(prefix.isEmpty() ? null : prefix, to);
+    }
+
+    public boolean contains(String name) {
+        return (from == null || name.compareTo(from) >= 0) && (to == null || name.compareTo(to) < 0);
+    }
+
+    // The part of a map sorted by name that lies in the range, after the keyset cursor if any
+    public <V> NavigableMap<String, V> view(NavigableMap<String, V> map, String after) {
+        boolean exclusive = startsAfter(after);
+        String lower = exclusive ? after : from;
+        if (lower != null && to != null && lower.compareTo(to) >= 0) {
+            return Collections.emptyNavigableMap();
+        }
+        if (lower == null) {
+            return to == null ? map : map.headMap(to, false);
+        }
+        return to == null ? map.tailMap(lower, !exclusive) : map.subMap(lower, !exclusive, to, false);
+    }
+
+    // Whether a keyset cursor, the last name of the previous page, moves the lower bound past from
+    public boolean startsAfter(String after) {
+        return after != null && (from == null || after.compareTo(from) >= 0);
+    }
+}
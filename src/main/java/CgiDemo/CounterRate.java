@@ -0,0 +1,9 @@
+package CgiDemo;
+
+// Increments of a counter over the window ending now; the window is rounded up to whole buckets
+public record CounterRate(String name, long windowSeconds, long count, double perSecond) {
+
+    public CounterRate(String name, long windowSeconds, long count) {
+        this(name, windowSeconds, count, (double) count / windowSeconds);
+    }
+}
@@ -0,0 +1,39 @@
+package CgiDemo;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// Increments of one counter in one hour (bucket is the epoch hour); rows are written through CounterRates
+@Entity
+@IdClass(CounterRateBucket.Key.class)
+public class CounterRateBucket {
+
+    private @Id String name;
+    private @Id long bucket;
+    private long count;
+
+    CounterRateBucket() {}
+
+    public static class Key implements Serializable {
+
+        private String name;
+        private long bucket;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return bucket == key.bucket && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, bucket);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts increments per counter over time. The last minute and hour are kept in memory in a
+ * {@link RateWindow} per counter; completed minutes are rolled up into counter_rate_bucket rows of
+ * one hour every persist interval, which answer longer windows up to the retention. Hour rows past
+ * the retention and windows of counters idle for an hour are evicted by the same task.
+ */
+@Component
+@Profile("!reactive")
+public class CounterRates implements CounterChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterRates.class);
+
+    private static final long IDLE_SECONDS = 3600;
+
+    private static final String MERGE_SQL = "merge into counter_rate_bucket b"
+            + " using (values (cast(? as varchar(255)), cast(? as bigint), cast(? as bigint))) v(name, bucket, count)"
+            + " on b.name = v.name and b.bucket = v.bucket"
+            + " when matched then update set count = b.count + v.count"
+            + " when not matched then insert (name, bucket, count) values (v.name, v.bucket, v.count)";
+    private static final String SUM_SQL = "select coalesce(sum(count), 0) from counter_rate_bucket"
+            + " where name = ? and bucket > ?";
+    private static final String DELETE_SQL = "delete from counter_rate_bucket where name = ?";
+    private static final String EXPIRE_SQL = "delete from counter_rate_bucket where bucket <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactions;
+    private final CounterMetrics metrics;
+    private final Clock clock;
+    private final long retentionHours;
+
+    private final Map<String, RateWindow> windows = new ConcurrentHashMap<>();
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService persister;
+
+    public CounterRates(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactions,
+                        CounterMetrics metrics,
+                        CounterThreads threads,
+                        ObjectProvider<Clock> clock,
+                        @Value("${counter.rates.persist-interval:1m}") Duration persistInterval,
+                        @Value("${counter.rates.retention:7d}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactions = transactions;
+        this.metrics = metrics;
+        this.clock = clock.getIfAvailable(Clock::systemUTC);
+        this.retentionHours = retention.toHours();
+        this.persister = Executors.newSingleThreadScheduledExecutor(threads.factory("counter-rates"));
+        long intervalMillis = persistInterval.toMillis();
+        persister.scheduleWithFixedDelay(this::persistQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Only increments count; decrements, explicit values and deletions do not
+    @Override
+    public void counterChanged(String name, int delta) {
+        if (delta > 0) {
+            long now = now();
+            RateWindow window = windows.get(name);
+            if (window == null) {
+                window = windows.computeIfAbsent(name, key -> new RateWindow(now));
+            }
+            window.record(now, delta);
+        }
+    }
+
+    @Override
+    public void counterRemoved(String name) {
+        if (windows.remove(name) != null) {
+            removed.add(name);
+        }
+    }
+
+    /**
+     * Increments of the counter in the window ending now. Windows of up to a minute are counted in
+     * seconds, up to an hour in minutes, and beyond in hours up to the retention.
+     */
+    public CounterRate rate(String name, Duration window) {
+        long seconds = window.toSeconds() + (window.toNanosPart() > 0 ? 1 : 0);
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        long now = now();
+        RateWindow rates = windows.get(name);
+        if (seconds <= RateWindow.SECONDS) {
+            return new CounterRate(name, seconds, rates == null ? 0 : rates.sumSeconds(now, (int) seconds));
+        }
+        long minutes = ceilDiv(seconds, 60);
+        if (minutes <= RateWindow.MINUTES) {
+            return new CounterRate(name, minutes * 60, rates == null ? 0 : rates.sumMinutes(now, (int) minutes));
+        }
+        long hours = ceilDiv(seconds, 3600);
+        if (hours > retentionHours) {
+            throw new IllegalArgumentException("window must not exceed the retention of " + retentionHours + " hours");
+        }
+        // Hour rows hold the drained minutes, the window the rest
+        long undrained = rates == null ? 0 : rates.sumUndrained(now);
+        Long persisted = jdbcTemplate.queryForObject(SUM_SQL, Long.class, name, now / 3600 - hours);
+        metrics.dbRoundTrip();
+        return new CounterRate(name, hours * 3600, persisted + undrained);
+    }
+
+    /**
+     * Rolls the completed minutes of every counter up into their hour rows, in one batch, and evicts
+     * what fell out of the retention or went idle. The batch is one transaction: the rows add to what
+     * is stored, so a failed batch must leave nothing behind before the next persist sends it again.
+     */
+    public void persist() {
+        long now = now();
+        List<Object[]> batch = new ArrayList<>();
+        Map<RateWindow, Long> drained = new HashMap<>();
+        Map<Long, Long> hours = new HashMap<>();
+        windows.forEach((name, window) -> {
+            long last = window.undrainedMinutes(now, (minute, count) -> hours.merge(minute / 60, count, Long::sum));
+            hours.forEach((hour, count) -> batch.add(new Object[] {name, hour, count}));
+            hours.clear();
+            drained.put(window, last);
+        });
+        if (!batch.isEmpty()) {
+            transactions.executeWithoutResult(status -> jdbcTemplate.batchUpdate(MERGE_SQL, batch));
+            metrics.dbRoundTrip();
+        }
+        drained.forEach(RateWindow::markDrained);
+
+        for (String name : removed) {
+            removed.remove(name);
+            jdbcTemplate.update(DELETE_SQL, name);
+            metrics.dbRoundTrip();
+        }
+        jdbcTemplate.update(EXPIRE_SQL, now / 3600 - retentionHours);
+        metrics.dbRoundTrip();
+
+        windows.entrySet().removeIf(entry -> entry.getValue().isIdle(now, IDLE_SECONDS));
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        persister.shutdown();
+        persister.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void persistQuietly() {
+        try {
+            persist();
+        } catch (RuntimeException ex) {
+            log.warn("Persisting counter rates failed, will retry", ex);
+        }
+    }
+
+    private long now() {
+        return clock.millis() / 1000;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
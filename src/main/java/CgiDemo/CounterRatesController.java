@@ -0,0 +1,34 @@
+package CgiDemo;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@Profile("!reactive")
+public class CounterRatesController {
+
+    private final CounterService service;
+    private final CounterRates rates;
+
+    CounterRatesController(CounterService service, CounterRates rates) {
+        this.service = service;
+        this.rates = rates;
+    }
+
+    // Increments in the last window, e.g. GET /counters/{name}/rate?window=10s, 5m or 24h
+    @GetMapping("/counters/{name}/rate")
+    CounterRate rate(@PathVariable String name, @RequestParam(defaultValue = "1m") String window) {
+        service.findById(name);
+        try {
+            return rates.rate(name, DurationStyle.detectAndParse(window));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
+}
@@ -1,5 +1,90 @@
 package CgiDemo;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 public interface CounterRepository extends JpaRepository<Counter, String> {
+
+    int IN_CLAUSE_CHUNK = 1000;
+
+    // Single-statement updates so concurrent requests never read-modify-write the same row.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Counter c set c.count = c.count + :delta where c.name = :name")
+    int incrementCount(@Param("name") String name, @Param("delta") int delta);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Counter c set c.count = c.count - 1 where c.name = :name and c.count > 1")
+    int decrementIfAboveOne(@Param("name") String name);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Counter c where c.name = :name and c.count <= 1")
+    int deleteIfAtMostOne(@Param("name") String name);
+
+    // Unmanaged copies read through a cursor, so the persistence context stays empty while streaming.
+    // Must be consumed inside a transaction and closed afterwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new CgiDemo.Counter(c.name, c.count) from Counter c")
+    Stream<Counter> streamAll();
+
+    // The largest counters off counter_count_idx, so only limit rows are read and no count query runs
+    @Query("select new CgiDemo.Counter(c.name, c.count) from Counter c order by c.count desc, c.name")
+    List<Counter> findTop(Limit limit);
+
+    List<Counter> findByNameGreaterThanEqualAndNameLessThanOrderByName(String from, String to, Limit limit);
+
+    List<Counter> findByNameGreaterThanAndNameLessThanOrderByName(String after, String to, Limit limit);
+
+    List<Counter> findByNameGreaterThanEqualOrderByName(String from, Limit limit);
+
+    List<Counter> findByNameGreaterThanOrderByName(String after, Limit limit);
+
+    @Query("select new CgiDemo.CounterAggregate(count(c), coalesce(sum(c.count), 0)) from Counter c"
+            + " where c.name >= :from and c.name < :to")
+    CounterAggregate aggregateBetween(@Param("from") String from, @Param("to") String to);
+
+    @Query("select new CgiDemo.CounterAggregate(count(c), coalesce(sum(c.count), 0)) from Counter c"
+            + " where c.name >= :from")
+    CounterAggregate aggregateFrom(@Param("from") String from);
+
+    // A range scan on the primary key, starting at from or, for the next keyset page, after the cursor
+    default List<Counter> findRange(CounterRange range, String after, Limit limit) {
+        boolean exclusive = range.startsAfter(after);
+        String lower = exclusive ? after : range.from() == null ? "" : range.from();
+        if (range.to() == null) {
+            return exclusive ? findByNameGreaterThanOrderByName(lower, limit)
+                    : findByNameGreaterThanEqualOrderByName(lower, limit);
+        }
+        return exclusive ? findByNameGreaterThanAndNameLessThanOrderByName(lower, range.to(), limit)
+                : findByNameGreaterThanEqualAndNameLessThanOrderByName(lower, range.to(), limit);
+    }
+
+    default CounterAggregate aggregate(CounterRange range) {
+        String from = range.from() == null ? "" : range.from();
+        return range.to() == null ? aggregateFrom(from) : aggregateBetween(from, range.to());
+    }
+
+    // findAllById with the IN list split into bounded chunks, so huge name sets stay cheap to parse and plan
+    default List<Counter> findAllByIdInChunks(Collection<String> names) {
+        List<String> ids = List.copyOf(names);
+        List<Counter> counters = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK) {
+            counters.addAll(findAllById(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK, ids.size()))));
+        }
+        return counters;
+    }
 }
@@ -1,11 +1,143 @@
 package CgiDemo;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 public interface CounterService {
     List<Counter> findAll();
     Counter save(Counter newCounter);
     Counter findById(String name);
     void increaseCounter(String name);
-    void deleteCounter(String name);
+    // Decrements the counter, removing it at one; returns whether it was removed
+    boolean deleteCounter(String name);
+
+    /**
+     * Applies every delta, creating missing counters when asked to. Returns the resulting count per
+     * counter, 0 for counters the batch removed; names that did not exist are left out.
+     */
+    Map<String, Integer> increaseCounters(Map<String, Integer> deltas, boolean createMissing);
+
+    /**
+     * Splits the counter over the given number of rows so concurrent increments do not contend on one
+     * row lock; 1 merges it back. Only engines that write every increment to the database shard.
+     */
+    default void setShards(String name, int shards) {
+        throw new UnsupportedOperationException("This counter engine does not shard counters");
+    }
+
+    /**
+     * Saves the counter so that it expires after ttl, or with idle after ttl without increments. An
+     * expired counter is missing. Only the JPA engine expires counters.
+     */
+    default Counter save(Counter newCounter, Duration ttl, boolean idle) {
+        throw new UnsupportedOperationException("This counter engine does not expire counters");
+    }
+
+    // Whether the counter has expired but may not be deleted yet, so a cached version of it is stale
+    default boolean isExpired(String name) {
+        return false;
+    }
+
+    // The defaults below work on top of findAll() for engines without a native implementation.
+
+    default Page<Counter> findAll(Pageable pageable) {
+        List<Counter> counters = findAll().stream().sorted(comparator(pageable.getSort())).toList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(counters, pageable, counters.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), counters.size());
+        int to = Math.min(from + pageable.getPageSize(), counters.size());
+        return new PageImpl<>(counters.subList(from, to), pageable, counters.size());
+    }
+
+    // Creates or replaces every counter, as save does, in as few round trips as the engine allows
+    default void saveAll(List<Counter> counters) {
+        counters.forEach(this::save);
+    }
+
+    // Returns the counters that exist among the given names; missing names are skipped, not reported as errors.
+    default List<Counter> findAllById(Collection<String> names) {
+        List<Counter> counters = new ArrayList<>(names.size());
+        for (String name : names) {
+            try {
+                counters.add(findById(name));
+            } catch (CounterNotFoundException ex) {
+                // left out of the result
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * The k largest counters, largest first and by name among equal counts. Engines that cannot rank
+     * their counters throw UnsupportedOperationException.
+     */
+    default List<Counter> top(int k) {
+        throw new UnsupportedOperationException("This counter engine does not rank counters");
+    }
+
+    /**
+     * Counters in the range in name order, at most limit of them. Passing the last name of a page as
+     * after returns the next page.
+     */
+    default List<Counter> range(CounterRange range, String after, int limit) {
+        Comparator<Counter> byName = Comparator.comparing(Counter::getName);
+        PriorityQueue<Counter> first = new PriorityQueue<>(limit + 1, byName.reversed());
+        forEach(counter -> {
+            String name = counter.getName();
+            if (range.contains(name) && (after == null || name.compareTo(after) > 0)) {
+                first.add(counter);
+                if (first.size() > limit) {
+                    first.poll();
+                }
+            }
+        });
+        List<Counter> page = new ArrayList<>(first);
+        page.sort(byName);
+        return page;
+    }
+
+    default CounterAggregate aggregate(CounterRange range) {
+        long[] totals = new long[2];
+        forEach(counter -> {
+            if (range.contains(counter.getName())) {
+                totals[0]++;
+                totals[1] += counter.getCount();
+            }
+        });
+        return new CounterAggregate(totals[0], totals[1]);
+    }
+
+    // Hands every counter to the action without keeping them all in memory, where the engine allows it.
+    default void forEach(Consumer<Counter> action) {
+        findAll().forEach(action);
+    }
+
+    static Comparator<Counter> topOrder() {
+        return Comparator.comparingInt(Counter::getCount).reversed().thenComparing(Counter::getName);
+    }
+
+    private static Comparator<Counter> comparator(Sort sort) {
+        Comparator<Counter> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Counter> property = switch (order.getProperty()) {
+                case "name" -> Comparator.comparing(Counter::getName);
+                case "count" -> Comparator.comparingInt(Counter::getCount);
+                default -> throw new IllegalArgumentException("Cannot sort counters by " + order.getProperty());
+            };
+            comparator = comparator.thenComparing(order.isAscending() ? property : property.reversed());
+        }
+        return comparator;
+    }
 }
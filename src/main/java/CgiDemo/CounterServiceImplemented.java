@@ -1,51 +1,267 @@
 package CgiDemo;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.context.annotation.Profile;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "jpa", matchIfMissing = true)
 public class CounterServiceImplemented implements CounterService {
 
     private final CounterRepository repository;
+    private final CounterCache cache;
+    private final CounterBatchWriter batchWriter;
+    private final CounterShards shards;
+    private final CounterExpiries expiries;
+    private final TransactionTemplate transactions;
 
     @Autowired
-    public CounterServiceImplemented(CounterRepository repository) {
+    public CounterServiceImplemented(CounterRepository repository, CounterCache cache, CounterBatchWriter batchWriter,
+                                     CounterShards shards, CounterExpiries expiries, TransactionTemplate transactions) {
         this.repository = repository;
+        this.cache = cache;
+        this.batchWriter = batchWriter;
+        this.shards = shards;
+        this.expiries = expiries;
+        this.transactions = transactions;
     }
 
     @Override
     public List<Counter> findAll() {
-        return repository.findAll();
+        return shards.withShards(expiries.live(repository.findAll()));
     }
 
+    // Expired counters are left out of the page, but until they are swept they still count towards the totals
+    @Override
+    public Page<Counter> findAll(Pageable pageable) {
+        // Sorting by count orders sharded counters by their counter row alone
+        Page<Counter> page = repository.findAll(pageable).map(shards.overlay());
+        List<Counter> live = expiries.live(page.getContent());
+        return live.size() == page.getNumberOfElements() ? page : new PageImpl<>(live, pageable, page.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Counter> action) {
+        try (Stream<Counter> counters = repository.streamAll()) {
+            counters.filter(counter -> !expiries.isExpired(counter.getName())).map(shards.overlay()).forEach(action);
+        }
+    }
+
+    // The expiry is replaced before the counter is written, so the sweeper cannot delete the new counter
+    // under the old expiry
     @Override
     public Counter save(Counter newCounter) {
-        return repository.save(newCounter);
+        expiries.created(newCounter.getName());
+        return write(newCounter);
+    }
+
+    @Override
+    public Counter save(Counter newCounter, Duration ttl, boolean idle) {
+        expiries.expire(newCounter.getName(), ttl, idle);
+        return write(newCounter);
+    }
+
+    @Override
+    public void saveAll(List<Counter> counters) {
+        counters.forEach(counter -> {
+            shards.clear(counter.getName());
+            expiries.created(counter.getName());
+        });
+        batchWriter.set(counters);
+        counters.forEach(counter -> cache.invalidate(counter.getName()));
     }
 
     @Override
     public Counter findById(String name) {
-        return repository.findById(name).orElseThrow(() -> new CounterNotFoundException(name));
+        if (expiries.isExpired(name)) {
+            throw new CounterNotFoundException(name);
+        }
+        return cache.get(name, key -> repository.findById(key).map(shards::withShards));
+    }
+
+    @Override
+    public boolean isExpired(String name) {
+        return expiries.isExpired(name);
+    }
+
+    @Override
+    public List<Counter> findAllById(Collection<String> names) {
+        return shards.withShards(expiries.live(repository.findAllByIdInChunks(names)));
+    }
+
+    // Pages that lost expired counters are topped up from after their last row, so a short page still means the end
+    @Override
+    public List<Counter> range(CounterRange range, String after, int limit) {
+        List<Counter> page = new ArrayList<>(limit);
+        while (page.size() < limit) {
+            int wanted = limit - page.size();
+            List<Counter> rows = repository.findRange(range, after, Limit.of(wanted));
+            page.addAll(expiries.live(rows));
+            if (rows.size() < wanted) {
+                break;
+            }
+            after = rows.get(rows.size() - 1).getName();
+        }
+        return shards.withShards(page);
+    }
+
+    // Summed by the database, so expired counters are included until they are swept
+    @Override
+    public CounterAggregate aggregate(CounterRange range) {
+        CounterAggregate rows = repository.aggregate(range);
+        long shardSum = shards.sum(range);
+        return shardSum == 0 ? rows : new CounterAggregate(rows.counters(), rows.sum() + shardSum);
+    }
+
+    // Sharded counters are ranked by their full count, so they are read alongside the top rows
+    @Override
+    public List<Counter> top(int k) {
+        List<Counter> rows = repository.findTop(Limit.of(k));
+        List<Counter> candidates = new ArrayList<>(expiries.live(rows));
+        // Expired rows that are not swept yet are skipped by reading further down the index
+        for (int limit = k; candidates.size() < k && rows.size() == limit; ) {
+            limit *= 2;
+            rows = repository.findTop(Limit.of(limit));
+            candidates = new ArrayList<>(expiries.live(rows));
+        }
+        Set<String> sharded = shards.sharded();
+        if (sharded.isEmpty()) {
+            return candidates.size() > k ? candidates.subList(0, k) : candidates;
+        }
+        candidates.addAll(expiries.live(repository.findAllByIdInChunks(sharded)));
+        Map<String, Counter> byName = new HashMap<>();
+        shards.withShards(candidates).forEach(counter -> byName.put(counter.getName(), counter));
+        return byName.values().stream().sorted(CounterService.topOrder()).limit(k).toList();
     }
 
     @Override
     public void increaseCounter(String name) {
-        Counter counter = repository.findById(name).orElseThrow(() -> new CounterNotFoundException(name));
-        counter.setCount(counter.getCount() + 1);
-        repository.save(counter);
+        if (expiries.isExpired(name)) {
+            throw new CounterNotFoundException(name);
+        }
+        expiries.touched(name);
+        boolean applied = shards.increment(name) || repository.incrementCount(name, 1) != 0;
+        cache.invalidate(name);
+        if (!applied) {
+            expiries.forget(name);
+            throw new CounterNotFoundException(name);
+        }
+        shards.shardIfHot(name);
+    }
+
+    private Counter write(Counter newCounter) {
+        shards.clear(newCounter.getName());
+        Counter saved = repository.save(newCounter);
+        cache.invalidate(saved.getName());
+        return saved;
+    }
+
+    @Override
+    public void setShards(String name, int shardCount) {
+        try {
+            shards.setShards(name, shardCount);
+        } finally {
+            cache.invalidate(name);
+        }
+    }
+
+    @Override
+    public boolean deleteCounter(String name) {
+        if (expiries.isExpired(name)) {
+            throw new CounterNotFoundException(name);
+        }
+        try {
+            if (shards.isSharded(name)) {
+                boolean removed = shards.decrementOrDelete(name);
+                if (removed) {
+                    expiries.forget(name);
+                }
+                return removed;
+            }
+            // The two conditional statements partition on the current count, so one of them applies
+            // unless the row is missing or another request moved it across the boundary in between.
+            while (repository.decrementIfAboveOne(name) == 0) {
+                if (repository.deleteIfAtMostOne(name) != 0) {
+                    expiries.forget(name);
+                    return true;
+                }
+                if (!repository.existsById(name)) {
+                    throw new CounterNotFoundException(name);
+                }
+            }
+            return false;
+        } finally {
+            cache.invalidate(name);
+        }
     }
 
+    // Purges, folds and the batch commit together, so a failed batch leaves expiries and shards as they
+    // were; the cache is invalidated once the transaction is over
     @Override
-    public void deleteCounter(String name) {
-        Counter counter = repository.findById(name).orElseThrow(() -> new CounterNotFoundException(name));
-        counter.setCount(counter.getCount() - 1);
+    public Map<String, Integer> increaseCounters(Map<String, Integer> deltas, boolean createMissing) {
+        try {
+            return transactions.execute(status -> applyBatch(new TreeMap<>(deltas), createMissing));
+        } finally {
+            deltas.keySet().forEach(cache::invalidate);
+        }
+    }
 
-        if (counter.getCount() <= 0) {
-            repository.deleteById(name);
-        } else {
-            repository.save(counter);
+    // Names are visited in the order the batch writer updates them, so rows are locked in name order throughout
+    private Map<String, Integer> applyBatch(SortedMap<String, Integer> deltas, boolean createMissing) {
+        List<String> sharded = new ArrayList<>();
+        for (String name : deltas.keySet()) {
+            // Expired counters are deleted first, so the batch treats them as missing
+            boolean purged = expiries.purge(name);
+            if (purged) {
+                shards.forget(name);
+            }
+            expiries.touched(name);
+            // Sharded counters are folded into their row first, so the batch sees and depletes their full count
+            if (!purged && shards.isSharded(name)) {
+                sharded.add(name);
+                try {
+                    shards.fold(name);
+                } catch (CounterNotFoundException ex) {
+                    // reported as missing by the batch
+                }
+            }
+        }
+        Map<String, Integer> counts = batchWriter.apply(deltas, createMissing);
+        for (String name : sharded) {
+            Integer count = counts.get(name);
+            if (count != null && count > 0) {
+                counts.put(name, shards.withShards(new Counter(name, count)).getCount());
+            } else if (count != null) {
+                shards.forget(name);
+            }
+        }
+        for (String name : deltas.keySet()) {
+            Integer count = counts.get(name);
+            if (count == null || count <= 0) {
+                expiries.forget(name);
+            }
         }
+        return counts;
     }
 }
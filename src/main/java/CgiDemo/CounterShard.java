@@ -0,0 +1,39 @@
+package CgiDemo;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// One slice of a sharded counter; rows are written through CounterShards, the mapping only defines the table
+@Entity
+@IdClass(CounterShard.Key.class)
+public class CounterShard {
+
+    private @Id String name;
+    private @Id int shard;
+    private int delta;
+
+    CounterShard() {}
+
+    public static class Key implements Serializable {
+
+        private String name;
+        private int shard;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return shard == key.shard && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, shard);
+        }
+    }
+}
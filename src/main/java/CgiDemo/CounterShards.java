@@ -0,0 +1,292 @@
+package CgiDemo;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Spreads the increments of hot counters over several counter_shard rows, so they stop queueing on the
+ * lock of one counter row. A sharded counter's count is its counter row plus the deltas of its shards.
+ * Statements that need a consistent count lock the shard rows before the counter row, in that order.
+ * Which counters are sharded is kept in memory, so this assumes a single instance per database.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "jpa", matchIfMissing = true)
+public class CounterShards {
+
+    private static final String INCREMENT_SQL = "update counter_shard set delta = delta + 1"
+            + " where name = ? and shard = ? and exists (select 1 from counter c where c.name = ?)";
+    private static final String LOCK_SHARDS_SQL = "select delta from counter_shard where name = ? for update";
+    private static final String LOCK_COUNTER_SQL = "select count from counter where name = ? for update";
+    private static final String FOLD_SQL = "update counter set count = count + ? where name = ?";
+    private static final String DECREMENT_SQL = "update counter set count = count - 1 where name = ?";
+    private static final String DELETE_COUNTER_SQL = "delete from counter where name = ?";
+    private static final String DELETE_SHARDS_SQL = "delete from counter_shard where name = ?";
+    private static final String INSERT_SHARD_SQL = "insert into counter_shard (name, shard, delta) values (?, ?, 0)";
+    private static final String CLEAR_SHARDS_SQL = "update counter_shard set delta = 0 where name = ?";
+    private static final String SUM_SQL = "select sum(delta) from counter_shard where name = ?";
+    private static final String SUMS_SQL = "select name, sum(delta) from counter_shard group by name";
+    private static final String RANGE_SUM_SQL = "select sum(delta) from counter_shard where name >= ? and name < ?";
+    private static final String TAIL_SUM_SQL = "select sum(delta) from counter_shard where name >= ?";
+    private static final String SHARD_COUNTS_SQL = "select name, count(*) from counter_shard group by name";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactions;
+    private final CounterMetrics metrics;
+    private final long autoThreshold;
+    private final int autoShards;
+
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+    private final ReentrantLock reshardLock = new ReentrantLock();
+
+    CounterShards(JdbcTemplate jdbcTemplate,
+                  TransactionTemplate transactions,
+                  CounterMetrics metrics,
+                  @Value("${counter.shards.auto-threshold:0}") long autoThreshold,
+                  @Value("${counter.shards.auto-count:8}") int autoShards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactions = transactions;
+        this.metrics = metrics;
+        this.autoThreshold = autoThreshold;
+        this.autoShards = autoShards;
+    }
+
+    @PostConstruct
+    void load() {
+        jdbcTemplate.query(SHARD_COUNTS_SQL, row -> { shardCounts.put(row.getString(1), row.getInt(2)); });
+        metrics.dbRoundTrip();
+    }
+
+    public boolean isSharded(String name) {
+        return shardCounts.containsKey(name);
+    }
+
+    public Set<String> sharded() {
+        return Set.copyOf(shardCounts.keySet());
+    }
+
+    /**
+     * Adds one to a random shard of the counter. Returns false if the counter is not sharded, or the
+     * shard was just removed by a reshard, in which case the caller increments the counter row instead.
+     */
+    public boolean increment(String name) {
+        Integer shards = shardCounts.get(name);
+        if (shards == null) {
+            return false;
+        }
+        int updated = jdbcTemplate.update(INCREMENT_SQL, name, ThreadLocalRandom.current().nextInt(shards), name);
+        metrics.dbRoundTrip();
+        return updated == 1;
+    }
+
+    // Shards the counter once the hot-counter tracker ranks it above the configured threshold
+    public void shardIfHot(String name) {
+        if (autoThreshold > 0 && !isSharded(name)
+                && metrics.increments().estimate(name) >= autoThreshold && reshardLock.tryLock()) {
+            try {
+                if (!isSharded(name)) {
+                    reshard(name, autoShards);
+                }
+            } finally {
+                reshardLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Moves the counter to the given number of shards; 1 folds it back into its counter row.
+     */
+    public void setShards(String name, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("A counter needs at least one shard");
+        }
+        reshardLock.lock();
+        try {
+            reshard(name, shards);
+        } finally {
+            reshardLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the shard deltas into the counter row, leaving the shards at zero.
+     */
+    public void fold(String name) {
+        if (!Boolean.TRUE.equals(transactions.execute(status -> foldLocked(name)))) {
+            counterMissing(name);
+        }
+    }
+
+    // DELETE semantics on the combined count: decrement while above one, otherwise remove the counter;
+    // returns whether it was removed
+    public boolean decrementOrDelete(String name) {
+        Boolean deleted = transactions.execute(status -> {
+            int sum = lockShards(name);
+            Integer count = lockCounter(name);
+            if (count == null) {
+                return null;
+            }
+            if (count + sum > 1) {
+                jdbcTemplate.update(DECREMENT_SQL, name);
+                metrics.dbRoundTrip();
+                return false;
+            }
+            jdbcTemplate.update(DELETE_COUNTER_SQL, name);
+            jdbcTemplate.update(DELETE_SHARDS_SQL, name);
+            metrics.dbRoundTrip();
+            metrics.dbRoundTrip();
+            return true;
+        });
+        if (deleted == null) {
+            counterMissing(name);
+        } else if (deleted) {
+            shardCounts.remove(name);
+        }
+        return deleted;
+    }
+
+    // Drops the shards of a counter that was removed by a statement outside this class
+    public void forget(String name) {
+        if (isSharded(name)) {
+            jdbcTemplate.update(DELETE_SHARDS_SQL, name);
+            metrics.dbRoundTrip();
+            CounterTransactions.afterCommit(() -> shardCounts.remove(name));
+        }
+    }
+
+    // Resets the shards of a counter whose count is being overwritten
+    public void clear(String name) {
+        if (isSharded(name)) {
+            jdbcTemplate.update(CLEAR_SHARDS_SQL, name);
+            metrics.dbRoundTrip();
+        }
+    }
+
+    // Sum of the shard deltas of the counters in the range
+    public long sum(CounterRange range) {
+        if (shardCounts.isEmpty()) {
+            return 0;
+        }
+        String from = range.from() == null ? "" : range.from();
+        Long sum = range.to() == null
+                ? jdbcTemplate.queryForObject(TAIL_SUM_SQL, Long.class, from)
+                : jdbcTemplate.queryForObject(RANGE_SUM_SQL, Long.class, from, range.to());
+        metrics.dbRoundTrip();
+        return sum == null ? 0 : sum;
+    }
+
+    public Counter withShards(Counter counter) {
+        if (!isSharded(counter.getName())) {
+            return counter;
+        }
+        Integer sum = jdbcTemplate.queryForObject(SUM_SQL, Integer.class, counter.getName());
+        metrics.dbRoundTrip();
+        return sum == null || sum == 0 ? counter : new Counter(counter.getName(), counter.getCount() + sum);
+    }
+
+    public List<Counter> withShards(List<Counter> counters) {
+        if (shardCounts.isEmpty()) {
+            return counters;
+        }
+        UnaryOperator<Counter> overlay = overlay();
+        List<Counter> result = new ArrayList<>(counters.size());
+        counters.forEach(counter -> result.add(overlay.apply(counter)));
+        return result;
+    }
+
+    /**
+     * Returns a function adding the shard deltas to counters read from the counter table, based on one
+     * snapshot of all shard sums. Unsharded counters pass through unchanged.
+     */
+    public UnaryOperator<Counter> overlay() {
+        if (shardCounts.isEmpty()) {
+            return UnaryOperator.identity();
+        }
+        Map<String, Integer> sums = new HashMap<>();
+        jdbcTemplate.query(SUMS_SQL, row -> { sums.put(row.getString(1), row.getInt(2)); });
+        metrics.dbRoundTrip();
+        return counter -> {
+            Integer sum = sums.get(counter.getName());
+            return sum == null || sum == 0 ? counter : new Counter(counter.getName(), counter.getCount() + sum);
+        };
+    }
+
+    private void reshard(String name, int shards) {
+        Boolean found = transactions.execute(status -> {
+            if (!foldLocked(name)) {
+                return false;
+            }
+            jdbcTemplate.update(DELETE_SHARDS_SQL, name);
+            metrics.dbRoundTrip();
+            if (shards > 1) {
+                List<Object[]> rows = new ArrayList<>(shards);
+                for (int shard = 0; shard < shards; shard++) {
+                    rows.add(new Object[] {name, shard});
+                }
+                jdbcTemplate.batchUpdate(INSERT_SHARD_SQL, rows);
+                metrics.dbRoundTrip();
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(found)) {
+            counterMissing(name);
+        }
+        // Increments that pick a shard which is not there yet, or no longer, fall back to the counter row
+        if (shards > 1) {
+            shardCounts.put(name, shards);
+        } else {
+            shardCounts.remove(name);
+        }
+    }
+
+    private boolean foldLocked(String name) {
+        int sum = lockShards(name);
+        if (lockCounter(name) == null) {
+            return false;
+        }
+        if (sum != 0) {
+            jdbcTemplate.update(FOLD_SQL, sum, name);
+            jdbcTemplate.update(CLEAR_SHARDS_SQL, name);
+            metrics.dbRoundTrip();
+            metrics.dbRoundTrip();
+        }
+        return true;
+    }
+
+    // Shards left behind by a counter that no longer exists must not leak into a new counter of that name
+    private void counterMissing(String name) {
+        forget(name);
+        throw new CounterNotFoundException(name);
+    }
+
+    private int lockShards(String name) {
+        int sum = 0;
+        for (Integer delta : jdbcTemplate.queryForList(LOCK_SHARDS_SQL, Integer.class, name)) {
+            sum += delta;
+        }
+        metrics.dbRoundTrip();
+        return sum;
+    }
+
+    private Integer lockCounter(String name) {
+        List<Integer> count = jdbcTemplate.queryForList(LOCK_COUNTER_SQL, Integer.class, name);
+        metrics.dbRoundTrip();
+        return count.isEmpty() ? null : count.get(0);
+    }
+
+}
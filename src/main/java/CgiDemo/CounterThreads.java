@@ -0,0 +1,30 @@
+package CgiDemo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of background workers such as flushers, following the same
+ * spring.threads.virtual.enabled switch that Boot applies to Tomcat and its task executors.
+ */
+@Component
+public class CounterThreads {
+
+    private final boolean virtual;
+
+    public CounterThreads(@Value("${spring.threads.virtual.enabled:false}") boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    public ThreadFactory factory(String name) {
+        return virtual
+                ? Thread.ofVirtual().name(name + "-", 0).factory()
+                : Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
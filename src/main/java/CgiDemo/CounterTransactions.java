@@ -0,0 +1,28 @@
+package CgiDemo;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps in-memory bookkeeping in step with the database: a change that mirrors a statement is only
+ * made once the surrounding transaction commits, and not at all if it rolls back.
+ */
+final class CounterTransactions {
+
+    private CounterTransactions() {
+    }
+
+    // Runs the action after the current transaction commits, or right away outside a transaction
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
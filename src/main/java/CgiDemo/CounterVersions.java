@@ -0,0 +1,82 @@
+package CgiDemo;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions for strong ETags, kept in memory so a conditional GET is answered without touching the
+ * counter store. Every change takes the next value of one clock: a counter's version is the clock
+ * value of its last change and the collection's version is the clock itself. A counter seen for the
+ * first time gets the current clock value; only counters that exist keep a version, so lookups of
+ * unknown names do not grow the map. ETags carry a per-process epoch, so a restart never confirms a
+ * payload cached before it, and the representation they were sent in, so one version in CBOR and in
+ * JSON gets different tags.
+ */
+@Component
+public class CounterVersions implements CounterChangeListener {
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    // Read before the counter is loaded, so a change racing with the load only makes the tag older
+    public String etag(String name) {
+        AtomicLong version = versions.get(name);
+        if (version == null) {
+            version = versions.computeIfAbsent(name, key -> new AtomicLong(clock.get()));
+        }
+        return tag(version.get());
+    }
+
+    // The counter was not found after its tag was taken; dropping a version is always safe, the next
+    // lookup starts from the current clock
+    public void missing(String name) {
+        versions.remove(name);
+    }
+
+    public String collectionEtag() {
+        return tag(clock.get());
+    }
+
+    @Override
+    public void counterChanged(String name, int delta) {
+        bump(name);
+    }
+
+    @Override
+    public void counterSet(String name, int count) {
+        bump(name);
+    }
+
+    @Override
+    public void counterRemoved(String name) {
+        clock.incrementAndGet();
+        versions.remove(name);
+    }
+
+    private void bump(String name) {
+        long next = clock.incrementAndGet();
+        AtomicLong version = versions.get(name);
+        if (version != null) {
+            version.accumulateAndGet(next, Math::max);
+        }
+    }
+
+    // The tag of one representation of a version, e.g. "epoch.7.cbor"; a tag that already names a
+    // representation gets the given one instead
+    public static String representation(String etag, String representation) {
+        String version = etag.substring(1, etag.length() - 1);
+        if (version.indexOf('.') != version.lastIndexOf('.')) {
+            version = version.substring(0, version.lastIndexOf('.'));
+        }
+        return "\"" + version + "." + representation + "\"";
+    }
+
+    private String tag(long version) {
+        return "\"" + epoch + "." + version + "\"";
+    }
+}
@@ -0,0 +1,254 @@
+package CgiDemo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps counters in memory as PN-counters replicated between the nodes of a cluster by
+ * {@link CrdtReplicator}. Each node only ever adds to its own increment and decrement totals of a
+ * counter, so writes never coordinate; a counter's count is the sum over all nodes, and it exists
+ * while that is positive. The node id gets a random suffix per process, so a restarted node starts
+ * fresh totals instead of reusing ones its peers already hold. Totals of removed counters are kept,
+ * since a PN-counter cannot forget them without coordination.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "crdt")
+public class CrdtCounterService implements CounterService {
+
+    private final String node;
+    private final List<String> peers;
+
+    private final Map<String, PnCounter> counters = new ConcurrentHashMap<>();
+
+    // Counters changed since they were last sent, per peer URL
+    private final Map<String, Set<String>> changed = new HashMap<>();
+
+    public CrdtCounterService(@Value("${counter.crdt.node-id:}") String nodeId,
+                              @Value("${counter.crdt.peers:}") List<String> peers) {
+        this.node = (nodeId.isBlank() ? "node" : nodeId) + "-"
+                + Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+        this.peers = peers.stream().map(String::strip).filter(peer -> !peer.isEmpty()).toList();
+        this.peers.forEach(peer -> changed.put(peer, ConcurrentHashMap.newKeySet()));
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public List<String> peers() {
+        return peers;
+    }
+
+    @Override
+    public List<Counter> findAll() {
+        List<Counter> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public void forEach(Consumer<Counter> action) {
+        counters.forEach((name, counter) -> {
+            long count = counter.value();
+            if (count > 0) {
+                action.accept(new Counter(name, (int) count));
+            }
+        });
+    }
+
+    @Override
+    public List<Counter> top(int k) {
+        TopCounters top = new TopCounters(k);
+        forEach(top);
+        return top.result();
+    }
+
+    // Adds the difference to the current count, so concurrent saves on several nodes add up; a count that
+    // concurrent deletes took below zero is made up for as well
+    @Override
+    public Counter save(Counter newCounter) {
+        PnCounter counter = counter(newCounter.getName());
+        synchronized (counter) {
+            counter.add(newCounter.getCount() - counter.value());
+        }
+        changed(newCounter.getName());
+        return newCounter;
+    }
+
+    @Override
+    public Counter findById(String name) {
+        PnCounter counter = counters.get(name);
+        long count = counter == null ? 0 : counter.value();
+        if (count <= 0) {
+            throw new CounterNotFoundException(name);
+        }
+        return new Counter(name, (int) count);
+    }
+
+    @Override
+    public void increaseCounter(String name) {
+        add(name, 1);
+    }
+
+    @Override
+    public boolean deleteCounter(String name) {
+        return add(name, -1) <= 0;
+    }
+
+    @Override
+    public Map<String, Integer> increaseCounters(Map<String, Integer> deltas, boolean createMissing) {
+        Map<String, Integer> counts = new HashMap<>();
+        new TreeMap<>(deltas).forEach((name, delta) -> {
+            PnCounter existing = counters.get(name);
+            if (existing != null && existing.value() > 0) {
+                existing.add(delta);
+                changed(name);
+                counts.put(name, (int) Math.max(existing.value(), 0));
+            } else if (createMissing) {
+                counts.put(name, delta > 0 ? save(new Counter(name, delta)).getCount() : 0);
+            }
+        });
+        return counts;
+    }
+
+    // The state of the given counters, or of all counters if names is null
+    public CrdtState state(Collection<String> names) {
+        Map<String, Map<String, CrdtState.Totals>> state = new HashMap<>();
+        if (names == null) {
+            counters.forEach((name, counter) -> state.put(name, counter.totals(node)));
+        } else {
+            for (String name : names) {
+                PnCounter counter = counters.get(name);
+                if (counter != null) {
+                    state.put(name, counter.totals(node));
+                }
+            }
+        }
+        return new CrdtState(node, state);
+    }
+
+    /**
+     * Merges state received from another node and returns the counters whose count changed. Those are
+     * marked changed for every peer, so updates also spread between nodes that cannot reach each other.
+     */
+    public List<Merged> merge(CrdtState state) {
+        List<Merged> merged = new ArrayList<>();
+        state.counters().forEach((name, totals) -> {
+            PnCounter counter = counter(name);
+            long before = counter.value();
+            boolean grew = false;
+            for (Map.Entry<String, CrdtState.Totals> entry : totals.entrySet()) {
+                if (!entry.getKey().equals(node)) {
+                    grew |= counter.merge(entry.getKey(), entry.getValue());
+                }
+            }
+            if (grew) {
+                changed(name);
+                long after = counter.value();
+                if (after != before) {
+                    merged.add(new Merged(name, before, after));
+                }
+            }
+        });
+        return merged;
+    }
+
+    // Removes and returns the counters changed since the last call for this peer
+    public List<String> takeChanged(String peer) {
+        Set<String> names = changed.get(peer);
+        List<String> taken = new ArrayList<>();
+        for (String name : names) {
+            names.remove(name);
+            taken.add(name);
+        }
+        return taken;
+    }
+
+    // Puts back counters whose state could not be sent to the peer
+    public void retainChanged(String peer, Collection<String> names) {
+        changed.get(peer).addAll(names);
+    }
+
+    public record Merged(String name, long before, long after) {
+    }
+
+    // Returns the value after the change
+    private long add(String name, int delta) {
+        PnCounter counter = counters.get(name);
+        if (counter == null || counter.value() <= 0) {
+            throw new CounterNotFoundException(name);
+        }
+        counter.add(delta);
+        changed(name);
+        return counter.value();
+    }
+
+    private PnCounter counter(String name) {
+        PnCounter counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, key -> new PnCounter());
+    }
+
+    private void changed(String name) {
+        for (Set<String> names : changed.values()) {
+            names.add(name);
+        }
+    }
+
+    private static final class PnCounter {
+
+        private final AtomicLong increments = new AtomicLong();
+        private final AtomicLong decrements = new AtomicLong();
+
+        // Totals of the other nodes, guarded by this; their net sum is cached for reads
+        private final Map<String, CrdtState.Totals> others = new HashMap<>(4);
+        private volatile long othersValue;
+
+        long value() {
+            return increments.get() - decrements.get() + othersValue;
+        }
+
+        void add(long delta) {
+            if (delta >= 0) {
+                increments.addAndGet(delta);
+            } else {
+                decrements.addAndGet(-delta);
+            }
+        }
+
+        synchronized boolean merge(String node, CrdtState.Totals received) {
+            CrdtState.Totals known = others.get(node);
+            if (known != null && known.increments() >= received.increments()
+                    && known.decrements() >= received.decrements()) {
+                return false;
+            }
+            CrdtState.Totals totals = known == null ? received : new CrdtState.Totals(
+                    Math.max(known.increments(), received.increments()),
+                    Math.max(known.decrements(), received.decrements()));
+            others.put(node, totals);
+            long previous = known == null ? 0 : known.increments() - known.decrements();
+            othersValue += totals.increments() - totals.decrements() - previous;
+            return true;
+        }
+
+        synchronized Map<String, CrdtState.Totals> totals(String self) {
+            Map<String, CrdtState.Totals> totals = new HashMap<>(others);
+            totals.put(self, new CrdtState.Totals(increments.get(), decrements.get()));
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.ClientHttpRequestFactories;
+import org.springframework.boot.web.client.ClientHttpRequestFactorySettings;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchanges crdt state with the peers every sync interval. The first time a peer is reached its full
+ * state is pulled, which brings a started or restarted node up to date; after that each round pushes
+ * the counters changed since the last successful push, in batches. Changes that could not be pushed
+ * are kept for the next round, so nodes converge once a partition heals. Merged changes are published
+ * like local ones, for ETags and change subscribers.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "crdt")
+public class CrdtReplicator {
+
+    static final String STATE_PATH = "/cluster/counters";
+
+    private static final Logger log = LoggerFactory.getLogger(CrdtReplicator.class);
+
+    private final CrdtCounterService service;
+    private final CounterChanges changes;
+    private final RestClient client;
+    private final int batchSize;
+
+    private final Set<String> pulled = ConcurrentHashMap.newKeySet();
+    private final Set<String> unreachable = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService syncer;
+
+    CrdtReplicator(CrdtCounterService service,
+                   CounterChanges changes,
+                   RestClient.Builder clients,
+                   CounterThreads threads,
+                   @Value("${counter.crdt.sync-interval:1s}") Duration interval,
+                   @Value("${counter.crdt.timeout:2s}") Duration timeout,
+                   @Value("${counter.crdt.batch-size:10000}") int batchSize,
+                   @Value("${counter.crdt.secret:}") String secret) {
+        this.service = service;
+        this.changes = changes;
+        this.batchSize = batchSize;
+        if (!secret.isBlank()) {
+            clients = clients.defaultHeader(HttpHeaders.AUTHORIZATION, authorization(secret));
+        }
+        this.client = clients.requestFactory(ClientHttpRequestFactories.get(ClientHttpRequestFactorySettings.DEFAULTS
+                .withConnectTimeout(timeout).withReadTimeout(timeout))).build();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(threads.factory("counter-sync"));
+        long intervalMillis = interval.toMillis();
+        syncer.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static String authorization(String secret) {
+        return "Bearer " + secret;
+    }
+
+    public void receive(CrdtState state) {
+        for (CrdtCounterService.Merged merged : service.merge(state)) {
+            if (merged.after() <= 0) {
+                changes.removed(merged.name());
+            } else if (merged.before() <= 0) {
+                changes.set(merged.name(), (int) merged.after());
+            } else {
+                changes.changed(merged.name(), (int) (merged.after() - merged.before()));
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        syncer.shutdown();
+        syncer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void sync() {
+        for (String peer : service.peers()) {
+            try {
+                if (!pulled.contains(peer)) {
+                    CrdtState state = client.get().uri(peer + STATE_PATH).retrieve().body(CrdtState.class);
+                    if (state != null) {
+                        receive(state);
+                    }
+                    pulled.add(peer);
+                }
+                push(peer);
+                if (unreachable.remove(peer)) {
+                    log.info("Counter peer {} is reachable again", peer);
+                }
+            } catch (RestClientException ex) {
+                if (unreachable.add(peer)) {
+                    log.warn("Counter peer {} is unreachable, will retry: {}", peer, ex.getMessage());
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Syncing counters with {} failed", peer, ex);
+            }
+        }
+    }
+
+    private void push(String peer) {
+        List<String> names = service.takeChanged(peer);
+        try {
+            for (int from = 0; from < names.size(); from += batchSize) {
+                List<String> batch = names.subList(from, Math.min(from + batchSize, names.size()));
+                client.post().uri(peer + STATE_PATH).body(service.state(batch)).retrieve().toBodilessEntity();
+            }
+        } catch (RuntimeException ex) {
+            // Batches that did arrive are sent again, which merging makes harmless
+            service.retainChanged(peer, names);
+            throw ex;
+        }
+    }
+}
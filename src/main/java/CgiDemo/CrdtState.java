@@ -0,0 +1,14 @@
+package CgiDemo;
+
+import java.util.Map;
+
+/**
+ * Replicated state of some counters as exchanged between crdt nodes: for each counter, the increment
+ * and decrement totals of every node that changed it. Totals only grow, so merging takes the larger
+ * of each and can be repeated or reordered freely.
+ */
+public record CrdtState(String node, Map<String, Map<String, Totals>> counters) {
+
+    public record Totals(long increments, long decrements) {
+    }
+}
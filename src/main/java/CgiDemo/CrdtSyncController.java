@@ -0,0 +1,74 @@
+package CgiDemo;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Node-to-node endpoints of the crdt engine. A node presents the shared counter.crdt.secret as a bearer
+ * token; without a secret only requests from the loopback interface are accepted, so a node that was
+ * not configured for a cluster cannot be written to from outside.
+ */
+@RestController
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "crdt")
+public class CrdtSyncController {
+
+    private final CrdtCounterService service;
+    private final CrdtReplicator replicator;
+    private final byte[] authorization;
+
+    CrdtSyncController(CrdtCounterService service, CrdtReplicator replicator,
+                       @Value("${counter.crdt.secret:}") String secret) {
+        this.service = service;
+        this.replicator = replicator;
+        this.authorization = secret.isBlank() ? null : CrdtReplicator.authorization(secret).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @GetMapping(CrdtReplicator.STATE_PATH)
+    CrdtState state(HttpServletRequest request) {
+        checkPeer(request);
+        return service.state(null);
+    }
+
+    @PostMapping(CrdtReplicator.STATE_PATH)
+    void merge(@RequestBody CrdtState state, HttpServletRequest request) {
+        checkPeer(request);
+        replicator.receive(state);
+    }
+
+    private void checkPeer(HttpServletRequest request) {
+        boolean allowed;
+        if (authorization != null) {
+            String presented = request.getHeader(HttpHeaders.AUTHORIZATION);
+            allowed = presented != null
+                    && MessageDigest.isEqual(authorization, presented.getBytes(StandardCharsets.UTF_8));
+        } else {
+            allowed = isLoopback(request.getRemoteAddr());
+        }
+        if (!allowed) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not a counter peer");
+        }
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException ex) {
+            return false;
+        }
+    }
+}
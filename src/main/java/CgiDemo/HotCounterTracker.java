@@ -0,0 +1,140 @@
+package CgiDemo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate top-N of the names passed to {@link #record}. Frequencies live in a count-min sketch and
+ * only the names that currently rank highest are kept, so memory is fixed no matter how many counters
+ * exist. Recording allocates nothing, and every cell is halved after a sample of records so the ranking
+ * follows recent traffic rather than all-time totals.
+ */
+public class HotCounterTracker {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    public record Entry(String name, long estimate) {
+    }
+
+    private final int topN;
+    private final int width;
+    private final long sampleSize;
+    private final AtomicLongArray sketch;
+    private final AtomicLong records = new AtomicLong();
+
+    // Twice topN slots, so a rising name is tracked before it has overtaken the last of the top N
+    private final AtomicReferenceArray<String> candidates;
+    private final ReentrantLock admissionLock = new ReentrantLock();
+    private volatile long admissionThreshold;
+
+    public HotCounterTracker(int topN, int sketchWidth) {
+        this.topN = topN;
+        this.width = Integer.highestOneBit(Math.max(sketchWidth - 1, 1)) << 1;
+        this.sampleSize = 10L * width;
+        this.sketch = new AtomicLongArray(DEPTH * width);
+        this.candidates = new AtomicReferenceArray<>(2 * topN);
+    }
+
+    public void record(String name) {
+        int hash = name.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.incrementAndGet(cell(hash, row)));
+        }
+        if (records.incrementAndGet() % sampleSize == 0) {
+            age();
+        }
+        // Admission is best effort: if another thread is already reshuffling the candidates, skip it
+        if (estimate > admissionThreshold && !isCandidate(name, hash) && admissionLock.tryLock()) {
+            try {
+                admit(name, hash, estimate);
+            } finally {
+                admissionLock.unlock();
+            }
+        }
+    }
+
+    public long estimate(String name) {
+        int hash = name.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.get(cell(hash, row)));
+        }
+        return estimate;
+    }
+
+    public List<Entry> top() {
+        List<Entry> entries = new ArrayList<>(candidates.length());
+        for (int i = 0; i < candidates.length(); i++) {
+            String name = candidates.get(i);
+            if (name != null) {
+                entries.add(new Entry(name, estimate(name)));
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::estimate).reversed());
+        return entries.size() > topN ? List.copyOf(entries.subList(0, topN)) : entries;
+    }
+
+    private int cell(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return row * width + ((h ^ (h >>> 16)) & (width - 1));
+    }
+
+    private boolean isCandidate(String name, int hash) {
+        for (int i = 0; i < candidates.length(); i++) {
+            String candidate = candidates.get(i);
+            if (candidate == name || (candidate != null && candidate.hashCode() == hash && candidate.equals(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void admit(String name, int hash, long estimate) {
+        if (isCandidate(name, hash)) {
+            return;
+        }
+        int coldest = -1;
+        long coldestEstimate = Long.MAX_VALUE;
+        for (int i = 0; i < candidates.length() && coldestEstimate > 0; i++) {
+            String candidate = candidates.get(i);
+            long candidateEstimate = candidate == null ? 0 : estimate(candidate);
+            if (candidateEstimate < coldestEstimate) {
+                coldest = i;
+                coldestEstimate = candidateEstimate;
+            }
+        }
+        if (estimate > coldestEstimate) {
+            candidates.set(coldest, name);
+        }
+        updateThreshold();
+    }
+
+    private void age() {
+        admissionLock.lock();
+        try {
+            // Increments racing with the halving may be lost, which only makes the estimate rougher
+            for (int i = 0; i < sketch.length(); i++) {
+                sketch.set(i, sketch.get(i) >>> 1);
+            }
+            updateThreshold();
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    private void updateThreshold() {
+        long threshold = Long.MAX_VALUE;
+        for (int i = 0; i < candidates.length() && threshold > 0; i++) {
+            String candidate = candidates.get(i);
+            threshold = Math.min(threshold, candidate == null ? 0 : estimate(candidate));
+        }
+        admissionThreshold = threshold;
+    }
+}
@@ -0,0 +1,29 @@
+package CgiDemo;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Exposed at /actuator/hotcounters; estimates are approximate and decay with time
+@Component
+@Endpoint(id = "hotcounters")
+public class HotCountersEndpoint {
+
+    private final CounterMetrics metrics;
+
+    HotCountersEndpoint(CounterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, List<HotCounterTracker.Entry>> hottest() {
+        Map<String, List<HotCounterTracker.Entry>> result = new LinkedHashMap<>();
+        result.put("increments", metrics.increments().top());
+        result.put("reads", metrics.reads().top());
+        return result;
+    }
+}
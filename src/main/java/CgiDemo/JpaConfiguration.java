@@ -0,0 +1,29 @@
+package CgiDemo;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+// Both stacks live in one package, so each only scans the repositories of its own store
+@Configuration
+@Profile("!reactive")
+@EnableJpaRepositories(excludeFilters = @ComponentScan.Filter(
+        type = FilterType.ASSIGNABLE_TYPE, classes = ReactiveCounterRepository.class))
+public class JpaConfiguration {
+
+    // Hibernate passes every statement it prepares through the inspector, which makes it a cheap round-trip count
+    @Bean
+    HibernatePropertiesCustomizer statementCounter(CounterMetrics metrics) {
+        StatementInspector inspector = sql -> {
+            metrics.dbRoundTrip();
+            return sql;
+        };
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+}
@@ -2,22 +2,58 @@ package CgiDemo;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@Profile("!reactive")
 public class LoadDatabase {
 
     private static final Logger log = LoggerFactory.getLogger(LoadDatabase.class);
 
+    // Every node of a crdt cluster would add the sample counts once more, so those nodes start empty
     @Bean
-    CommandLineRunner initDatabase(CounterRepository repository) {
+    @ConditionalOnExpression("'${counter.engine:jpa}' != 'crdt'")
+    CommandLineRunner initDatabase(CounterService service) {
 
         return args -> {
-            log.info("Preloading " + repository.save(new Counter("counter1", 8)));
-            log.info("Preloading " + repository.save(new Counter("counter2", 2)));
+            preload(service, new Counter("counter1", 8));
+            preload(service, new Counter("counter2", 2));
         };
     }
 
+    // Seeds or migrates an environment from a file written by /counters/export: .csv, otherwise NDJSON
+    @Bean
+    @ConditionalOnExpression("!'${counter.import.file:}'.isBlank()")
+    CommandLineRunner importFile(CounterImporter importer, @Value("${counter.import.file}") Path file) {
+
+        return args -> {
+            long start = System.nanoTime();
+            CounterImportResult result;
+            try (InputStream in = Files.newInputStream(file)) {
+                result = file.toString().endsWith(".csv") ? importer.importCsv(in) : importer.importNdjson(in);
+            }
+            log.info("Imported {} counters from {} in {} ms", result.imported(), file,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        };
+    }
+
+    // Engines that persist across restarts recover their counters before this runs; those are kept
+    private static void preload(CounterService service, Counter counter) {
+        try {
+            log.info("Keeping " + service.findById(counter.getName()));
+        } catch (CounterNotFoundException ex) {
+            log.info("Preloading " + service.save(counter));
+        }
+    }
+
 }
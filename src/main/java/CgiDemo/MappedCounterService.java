@@ -0,0 +1,349 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps every counter in a memory-mapped file instead of the database. The file is an open-addressing
+ * hash table of fixed-size slots; each slot starts with one 64-bit word holding the slot state and the
+ * count, so increments and deletes are a single compare-and-set on the mapped memory and allocate
+ * nothing. Inserts take a global lock, lookups never do. A slot keeps its name for the lifetime of the
+ * file; removed counters leave a tombstone that is revived if the name is created again.
+ * The file survives a process crash but is only forced to disk on shutdown. An in-memory index of the
+ * slots sorted by name, rebuilt on startup and only written by inserts, serves range queries.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "mapped")
+public class MappedCounterService implements CounterService {
+
+    private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long MAGIC = 0x43474944454D4F31L;
+    private static final int HEADER_SIZE = 64;
+
+    // Slot layout: state and count word, name hash, name length, name chars
+    private static final int HASH_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 12;
+    private static final int NAME_OFFSET = 16;
+
+    private static final long EMPTY = 0;
+    private static final long LIVE = 1;
+    private static final long REMOVED = 2;
+
+    private final Path file;
+    private final boolean temporary;
+    private final int capacity;
+    private final int maxNameLength;
+    private final int slotSize;
+    private final MappedByteBuffer buffer;
+    private final ReentrantLock insertLock = new ReentrantLock();
+    private final NavigableMap<String, Integer> slotsByName = new ConcurrentSkipListMap<>();
+
+    public MappedCounterService(@Value("${counter.mapped.file:}") String file,
+                                @Value("${counter.mapped.capacity:1048576}") int capacity,
+                                @Value("${counter.mapped.max-name-length:64}") int maxNameLength) throws IOException {
+        this.temporary = file.isBlank();
+        this.file = temporary ? Files.createTempFile("counters", ".dat") : Path.of(file);
+        this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.maxNameLength = maxNameLength;
+        this.slotSize = (NAME_OFFSET + 2 * maxNameLength + 7) & ~7;
+        long size = HEADER_SIZE + (long) this.capacity * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A mapped counter file is limited to 2 GB; lower the capacity or name length");
+        }
+        try (FileChannel channel = FileChannel.open(this.file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean fresh = channel.size() == 0;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            if (fresh) {
+                buffer.putLong(0, MAGIC).putInt(8, this.capacity).putInt(12, slotSize);
+            } else if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != this.capacity || buffer.getInt(12) != slotSize) {
+                throw new IllegalStateException(this.file + " was written with a different capacity or name length");
+            }
+        }
+        if (temporary) {
+            this.file.toFile().deleteOnExit();
+        }
+        for (int slot = 0; slot < this.capacity; slot++) {
+            if (state(word(slot)) != EMPTY) {
+                slotsByName.put(name(slot), slot);
+            }
+        }
+    }
+
+    @Override
+    public List<Counter> findAll() {
+        List<Counter> counters = new ArrayList<>();
+        forEach(counters::add);
+        return counters;
+    }
+
+    @Override
+    public void forEach(Consumer<Counter> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            long word = word(slot);
+            if (state(word) == LIVE) {
+                action.accept(new Counter(name(slot), count(word)));
+            }
+        }
+    }
+
+    @Override
+    public List<Counter> top(int k) {
+        TopCounters top = new TopCounters(k);
+        forEach(top);
+        return top.result();
+    }
+
+    @Override
+    public List<Counter> range(CounterRange range, String after, int limit) {
+        List<Counter> page = new ArrayList<>();
+        for (Map.Entry<String, Integer> slot : range.view(slotsByName, after).entrySet()) {
+            if (page.size() == limit) {
+                break;
+            }
+            long word = word(slot.getValue());
+            if (state(word) == LIVE) {
+                page.add(new Counter(slot.getKey(), count(word)));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public CounterAggregate aggregate(CounterRange range) {
+        long number = 0;
+        long sum = 0;
+        for (int slot : range.view(slotsByName, null).values()) {
+            long word = word(slot);
+            if (state(word) == LIVE) {
+                number++;
+                sum += count(word);
+            }
+        }
+        return new CounterAggregate(number, sum);
+    }
+
+    @Override
+    public Counter save(Counter newCounter) {
+        String name = newCounter.getName();
+        insertLock.lock();
+        try {
+            int slot = find(name);
+            if (slot < 0) {
+                slot = claim(name);
+            }
+            WORD.setVolatile(buffer, offset(slot), word(LIVE, newCounter.getCount()));
+        } finally {
+            insertLock.unlock();
+        }
+        return newCounter;
+    }
+
+    @Override
+    public Counter findById(String name) {
+        int slot = find(name);
+        long word = slot < 0 ? EMPTY : word(slot);
+        if (state(word) != LIVE) {
+            throw new CounterNotFoundException(name);
+        }
+        return new Counter(name, count(word));
+    }
+
+    @Override
+    public void increaseCounter(String name) {
+        if (add(name, 1) == Long.MIN_VALUE) {
+            throw new CounterNotFoundException(name);
+        }
+    }
+
+    @Override
+    public boolean deleteCounter(String name) {
+        int slot = find(name);
+        if (slot < 0) {
+            throw new CounterNotFoundException(name);
+        }
+        int offset = offset(slot);
+        while (true) {
+            long word = (long) WORD.getVolatile(buffer, offset);
+            if (state(word) != LIVE) {
+                throw new CounterNotFoundException(name);
+            }
+            long next = count(word) > 1 ? word - 1 : word(REMOVED, 0);
+            if (WORD.compareAndSet(buffer, offset, word, next)) {
+                return count(word) <= 1;
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Integer> increaseCounters(Map<String, Integer> deltas, boolean createMissing) {
+        Map<String, Integer> counts = new HashMap<>();
+        new TreeMap<>(deltas).forEach((name, delta) -> {
+            long count = add(name, delta);
+            if (count == Long.MIN_VALUE && createMissing) {
+                insertLock.lock();
+                try {
+                    // Created by another request since the lookup, or still missing
+                    count = add(name, delta);
+                    if (count == Long.MIN_VALUE) {
+                        count = delta;
+                        if (delta > 0) {
+                            save(new Counter(name, delta));
+                        }
+                    }
+                } finally {
+                    insertLock.unlock();
+                }
+            }
+            if (count != Long.MIN_VALUE) {
+                counts.put(name, (int) Math.max(count, 0));
+            }
+        });
+        return counts;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (temporary) {
+            Files.deleteIfExists(file);
+        } else {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Adds the delta to a live counter and returns its new count, removing the counter if that drops
+     * to zero or below. Returns Long.MIN_VALUE if there is no live counter of that name.
+     */
+    private long add(String name, int delta) {
+        int slot = find(name);
+        if (slot < 0) {
+            return Long.MIN_VALUE;
+        }
+        int offset = offset(slot);
+        while (true) {
+            long word = (long) WORD.getVolatile(buffer, offset);
+            if (state(word) != LIVE) {
+                return Long.MIN_VALUE;
+            }
+            long count = (long) count(word) + delta;
+            long next = count > 0 ? word(LIVE, (int) count) : word(REMOVED, 0);
+            if (WORD.compareAndSet(buffer, offset, word, next)) {
+                return count;
+            }
+        }
+    }
+
+    // Returns the slot holding the name, live or removed, or -1; probing stops at the first empty slot
+    private int find(String name) {
+        int hash = name.hashCode();
+        int mask = capacity - 1;
+        for (int probe = 0, slot = spread(hash) & mask; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            // The acquire read orders the name reads after it, pairing with the release store in claim()
+            long word = (long) WORD.getAcquire(buffer, offset(slot));
+            if (state(word) == EMPTY) {
+                return -1;
+            }
+            if (matches(slot, hash, name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // Writes the name into the first empty slot of its probe sequence; the caller holds the insert lock
+    private int claim(String name) {
+        if (name.length() > maxNameLength) {
+            throw new IllegalArgumentException("Counter names are limited to " + maxNameLength + " characters");
+        }
+        int hash = name.hashCode();
+        int mask = capacity - 1;
+        for (int probe = 0, slot = spread(hash) & mask; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            int offset = offset(slot);
+            if (state((long) WORD.getVolatile(buffer, offset)) == EMPTY) {
+                buffer.putInt(offset + HASH_OFFSET, hash);
+                buffer.putShort(offset + LENGTH_OFFSET, (short) name.length());
+                for (int i = 0; i < name.length(); i++) {
+                    buffer.putChar(offset + NAME_OFFSET + 2 * i, name.charAt(i));
+                }
+                WORD.setRelease(buffer, offset, word(REMOVED, 0));
+                slotsByName.put(name, slot);
+                return slot;
+            }
+        }
+        throw new IllegalStateException("The mapped counter store is full (" + capacity + " slots)");
+    }
+
+    private boolean matches(int slot, int hash, String name) {
+        int offset = offset(slot);
+        if (buffer.getInt(offset + HASH_OFFSET) != hash || buffer.getShort(offset + LENGTH_OFFSET) != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (buffer.getChar(offset + NAME_OFFSET + 2 * i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String name(int slot) {
+        int offset = offset(slot);
+        char[] chars = new char[buffer.getShort(offset + LENGTH_OFFSET)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar(offset + NAME_OFFSET + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private long word(int slot) {
+        return (long) WORD.getVolatile(buffer, offset(slot));
+    }
+
+    // The whole file is below 2 GB, so byte offsets fit the int index of the buffer view
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B1;
+    }
+
+    private static long word(long state, int count) {
+        return state << 32 | (count & 0xFFFFFFFFL);
+    }
+
+    private static long state(long word) {
+        return word >>> 32;
+    }
+
+    private static int count(long word) {
+        return (int) word;
+    }
+}
@@ -0,0 +1,115 @@
+package CgiDemo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Increments of one counter over the last minute in one-second buckets and over the last hour in
+ * one-minute buckets. Both are rings indexed by time, so a bucket is reused, and its old count
+ * dropped, once its slot comes around again; recording never allocates. The two rings share one
+ * array whose slots pack the bucket into the high and its count into the low 32 bits, so a window
+ * takes about 1 KB; a bucket counts up to 2^32 - 1 increments and stays there.
+ */
+public final class RateWindow {
+
+    public static final int SECONDS = 60;
+    public static final int MINUTES = 60;
+
+    private static final long MAX_COUNT = 0xFFFFFFFFL;
+
+    // Seconds in slots [0, SECONDS), minutes in [SECONDS, SECONDS + MINUTES)
+    private final AtomicLongArray slots = new AtomicLongArray(SECONDS + MINUTES);
+
+    // Minutes up to and including this one have been handed to drainMinutes
+    private volatile long drainedMinute;
+    private volatile long lastSecond;
+
+    public RateWindow(long epochSecond) {
+        this.drainedMinute = epochSecond / 60 - 1;
+        this.lastSecond = epochSecond;
+    }
+
+    public void record(long epochSecond, long delta) {
+        add(0, SECONDS, epochSecond, delta);
+        add(SECONDS, MINUTES, epochSecond / 60, delta);
+        lastSecond = epochSecond;
+    }
+
+    // Increments in the count seconds up to and including epochSecond, at most SECONDS
+    public long sumSeconds(long epochSecond, int count) {
+        return sum(0, SECONDS, epochSecond, count);
+    }
+
+    // Increments in the count minutes up to and including the minute of epochSecond, at most MINUTES
+    public long sumMinutes(long epochSecond, int count) {
+        return sum(SECONDS, MINUTES, epochSecond / 60, count);
+    }
+
+    // Increments of the minutes that were not drained yet, up to and including the minute of epochSecond
+    public long sumUndrained(long epochSecond) {
+        long minute = epochSecond / 60;
+        return sum(SECONDS, MINUTES, minute, (int) Math.min(minute - drainedMinute, MINUTES));
+    }
+
+    /**
+     * Hands every completed minute that was not drained yet to the sink, oldest first, and returns the
+     * last of them; they only count as drained once that is passed to markDrained. Minutes that fell
+     * out of the ring before they were drained are lost.
+     */
+    public long undrainedMinutes(long epochSecond, MinuteSink sink) {
+        long completed = epochSecond / 60 - 1;
+        for (long minute = Math.max(drainedMinute + 1, completed - MINUTES + 1); minute <= completed; minute++) {
+            long count = get(SECONDS, MINUTES, minute);
+            if (count != 0) {
+                sink.accept(minute, count);
+            }
+        }
+        return completed;
+    }
+
+    public void markDrained(long epochMinute) {
+        drainedMinute = Math.max(drainedMinute, epochMinute);
+    }
+
+    // Nothing was recorded since before the last drained minute, so the window holds nothing new
+    public boolean isIdle(long epochSecond, long idleSeconds) {
+        return lastSecond < epochSecond - idleSeconds && lastSecond / 60 <= drainedMinute;
+    }
+
+    @FunctionalInterface
+    public interface MinuteSink {
+        void accept(long epochMinute, long count);
+    }
+
+    // A slot holding an earlier bucket starts over; a late record for a bucket whose slot moved on is dropped
+    private void add(int ring, int size, long bucket, long delta) {
+        int slot = ring + (int) (bucket % size);
+        while (true) {
+            long current = slots.get(slot);
+            long stamp = current >>> 32;
+            long next;
+            if (stamp == bucket) {
+                next = (bucket << 32) | Math.min((current & MAX_COUNT) + delta, MAX_COUNT);
+            } else if (stamp < bucket) {
+                next = (bucket << 32) | Math.min(delta, MAX_COUNT);
+            } else {
+                return;
+            }
+            if (slots.compareAndSet(slot, current, next)) {
+                return;
+            }
+        }
+    }
+
+    private long get(int ring, int size, long bucket) {
+        long current = slots.get(ring + (int) (bucket % size));
+        return current >>> 32 == bucket ? current & MAX_COUNT : 0;
+    }
+
+    private long sum(int ring, int size, long last, int count) {
+        long sum = 0;
+        for (long bucket = last - Math.min(count, size) + 1; bucket <= last; bucket++) {
+            sum += get(ring, size, bucket);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,41 @@
+package CgiDemo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.hateoas.config.EnableHypermediaSupport;
+import org.springframework.hateoas.config.EnableHypermediaSupport.HypermediaType;
+import org.springframework.hateoas.support.WebStack;
+
+// Boot only auto-configures HAL for Spring MVC, so the WebFlux stack enables it itself
+@Configuration
+@Profile("reactive")
+@EnableHypermediaSupport(type = HypermediaType.HAL, stacks = WebStack.WEBFLUX)
+@EnableR2dbcRepositories(excludeFilters = @ComponentScan.Filter(
+        type = FilterType.ASSIGNABLE_TYPE, classes = CounterRepository.class))
+public class ReactiveConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveConfiguration.class);
+
+    // Tomcat is on the classpath for the servlet stack and Boot would prefer it; serve from Netty's event loops
+    @Bean
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    CommandLineRunner initReactiveDatabase(ReactiveCounterService service) {
+
+        return args -> {
+            log.info("Preloading " + service.save(new Counter("counter1", 8)).block());
+            log.info("Preloading " + service.save(new Counter("counter2", 2)).block());
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package CgiDemo;
+
+import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+import reactor.core.publisher.Mono;
+
+// Non-blocking mirror of CounterController for the 'reactive' profile
+@RestController
+@Profile("reactive")
+public class ReactiveCounterController {
+
+    private static final int MAX_TOP = 1000;
+
+    private final ReactiveCounterService service;
+
+    ReactiveCounterController(ReactiveCounterService service) {
+        this.service = service;
+    }
+
+    @GetMapping("/counters")
+    Mono<CollectionModel<EntityModel<Counter>>> all() {
+        // The collection link is built once and shared by every counter, as in CounterModelAssembler
+        return linkTo(methodOn(ReactiveCounterController.class).all()).withRel("counters").toMono()
+                .flatMap(counters -> service.findAll()
+                        .map(counter -> toModel(counter, counters))
+                        .collectList()
+                        .map(models -> CollectionModel.of(models, counters.withSelfRel())));
+    }
+
+    @GetMapping("/counters/top")
+    Mono<CollectionModel<EntityModel<Counter>>> top(@RequestParam(defaultValue = "10") int k) {
+        if (k < 1 || k > MAX_TOP) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + MAX_TOP));
+        }
+        return linkTo(methodOn(ReactiveCounterController.class).all()).withRel("counters").toMono()
+                .flatMap(counters -> service.top(k)
+                        .map(counter -> toModel(counter, counters))
+                        .collectList()
+                        .map(models -> CollectionModel.of(models, topLink(counters, k))));
+    }
+
+    @PostMapping("/counters")
+    Mono<Counter> newCounter(@RequestBody Counter newCounter) {
+        return service.save(newCounter);
+    }
+
+    @GetMapping("/counters/{name}")
+    Mono<EntityModel<Counter>> one(@PathVariable String name) {
+        return linkTo(methodOn(ReactiveCounterController.class).all()).withRel("counters").toMono()
+                .flatMap(counters -> service.findById(name).map(counter -> toModel(counter, counters)));
+    }
+
+    @PutMapping("/counters/{name}")
+    Mono<Void> increaseCounter(@PathVariable String name) {
+        return service.increaseCounter(name);
+    }
+
+    @DeleteMapping("/counters/{name}")
+    Mono<Void> deleteCounter(@PathVariable String name) {
+        return service.deleteCounter(name);
+    }
+
+    // The name is encoded as one path segment, as in CounterModelAssembler
+    private static EntityModel<Counter> toModel(Counter counter, Link counters) {
+        String self = counters.getHref() + "/" + UriUtils.encodePathSegment(counter.getName(), StandardCharsets.UTF_8);
+        return EntityModel.of(counter, Link.of(self).withSelfRel(), counters);
+    }
+
+    private static Link topLink(Link counters, int k) {
+        return Link.of(UriComponentsBuilder.fromUriString(counters.getHref()).path("/top").queryParam("k", k)
+                .toUriString()).withSelfRel();
+    }
+}
@@ -0,0 +1,31 @@
+package CgiDemo;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// R2DBC counterpart of CounterRepository with the same single-statement updates
+public interface ReactiveCounterRepository extends R2dbcRepository<Counter, String> {
+
+    // Served by counter_count_idx, so only k rows are read
+    @Query("select * from counter order by count desc, name limit :k")
+    Flux<Counter> findTop(int k);
+
+    @Modifying
+    @Query("merge into counter key (name) values (:name, :count)")
+    Mono<Integer> upsert(String name, int count);
+
+    @Modifying
+    @Query("update counter set count = count + :delta where name = :name")
+    Mono<Integer> incrementCount(String name, int delta);
+
+    @Modifying
+    @Query("update counter set count = count - 1 where name = :name and count > 1")
+    Mono<Integer> decrementIfAboveOne(String name);
+
+    @Modifying
+    @Query("delete from counter where name = :name and count <= 1")
+    Mono<Integer> deleteIfAtMostOne(String name);
+}
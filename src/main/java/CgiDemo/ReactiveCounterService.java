@@ -0,0 +1,13 @@
+package CgiDemo;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCounterService {
+    Flux<Counter> findAll();
+    Flux<Counter> top(int k);
+    Mono<Counter> save(Counter newCounter);
+    Mono<Counter> findById(String name);
+    Mono<Void> increaseCounter(String name);
+    Mono<Void> deleteCounter(String name);
+}
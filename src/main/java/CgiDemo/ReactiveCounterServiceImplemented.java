@@ -0,0 +1,55 @@
+package CgiDemo;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@Profile("reactive")
+public class ReactiveCounterServiceImplemented implements ReactiveCounterService {
+
+    private final ReactiveCounterRepository repository;
+
+    public ReactiveCounterServiceImplemented(ReactiveCounterRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Flux<Counter> findAll() {
+        return repository.findAll();
+    }
+
+    @Override
+    public Flux<Counter> top(int k) {
+        return repository.findTop(k);
+    }
+
+    @Override
+    public Mono<Counter> save(Counter newCounter) {
+        return repository.upsert(newCounter.getName(), newCounter.getCount()).thenReturn(newCounter);
+    }
+
+    @Override
+    public Mono<Counter> findById(String name) {
+        return repository.findById(name).switchIfEmpty(Mono.error(() -> new CounterNotFoundException(name)));
+    }
+
+    @Override
+    public Mono<Void> increaseCounter(String name) {
+        return repository.incrementCount(name, 1)
+                .flatMap(updated -> updated == 0 ? Mono.error(new CounterNotFoundException(name)) : Mono.empty());
+    }
+
+    @Override
+    public Mono<Void> deleteCounter(String name) {
+        // Same protocol as CounterServiceImplemented: retry while a concurrent request moved the count
+        // across the boundary between the two conditional statements.
+        Mono<Boolean> attempt = repository.decrementIfAboveOne(name)
+                .flatMap(decremented -> decremented > 0 ? Mono.just(true) : repository.deleteIfAtMostOne(name)
+                        .flatMap(deleted -> deleted > 0 ? Mono.just(true) : repository.existsById(name)
+                                .flatMap(exists -> exists ? Mono.just(false)
+                                        : Mono.error(new CounterNotFoundException(name)))));
+        return attempt.repeat().takeUntil(done -> done).then();
+    }
+}
@@ -0,0 +1,41 @@
+package CgiDemo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the k largest of the counters handed to it in a bounded heap, for engines that rank by
+ * scanning counters they hold in memory: one pass, O(n log k) time and O(k) space.
+ */
+final class TopCounters implements Consumer<Counter> {
+
+    private static final Comparator<Counter> WORST_FIRST = CounterService.topOrder().reversed();
+
+    private final int k;
+    private final PriorityQueue<Counter> heap;
+
+    TopCounters(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(k + 1, WORST_FIRST);
+    }
+
+    @Override
+    public void accept(Counter counter) {
+        if (heap.size() < k) {
+            heap.add(counter);
+        } else if (WORST_FIRST.compare(counter, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(counter);
+        }
+    }
+
+    // Largest first, by name among equal counts
+    List<Counter> result() {
+        List<Counter> top = new ArrayList<>(heap);
+        top.sort(CounterService.topOrder());
+        return top;
+    }
+}
@@ -0,0 +1,629 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps counters in memory and makes every change durable by appending it to a write-ahead log.
+ * Requests apply their change and append its record under one short lock, then wait until a single
+ * writer thread has written and fsynced the log up to their record; whatever queued up during one
+ * fsync goes out with the next, so concurrent requests share fsyncs. Once a log segment grows past
+ * snapshot-after, the writer starts a new segment and a compact snapshot of all counters is written in
+ * the background, after which older segments are deleted. Startup loads the latest snapshot and
+ * replays the segments after it, so recovery time is bounded by the snapshot size plus one segment.
+ * Records carry the resulting count rather than a delta, so replaying one that a snapshot already
+ * contains is harmless; that lets the snapshot copy the live map without stopping writers.
+ * Reads may observe changes whose fsync is still in flight. Once writing the log fails, every
+ * further change is rejected before it reaches the map.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "wal")
+public class WalCounterService implements CounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(WalCounterService.class);
+
+    private static final byte SET = 1;
+    private static final byte REMOVE = 3;
+
+    // Record: body length, CRC32C of the body, then the body: sequence, type, value, name length, name
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_FIXED = 8 + 1 + 4 + 2;
+
+    private static final long SNAPSHOT_MAGIC = 0x43474944534E4150L;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path dir;
+    private final boolean temporary;
+    private final boolean sync;
+    private final long snapshotAfter;
+
+    private final NavigableMap<String, Integer> counters = new ConcurrentSkipListMap<>();
+    // The same counters in top order, changed together with the map under the append lock
+    private final NavigableSet<Counter> ranking = new ConcurrentSkipListSet<>(CounterService.topOrder());
+
+    // Guards the counters map for writers, the pending buffer, the sequence and the current segment
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final CRC32C appendCrc = new CRC32C();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private long lastSequence;
+    private long segmentBytes;
+    private boolean running = true;
+
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableChanged = durableLock.newCondition();
+    private volatile long durableSequence;
+    private volatile IOException failure;
+
+    private FileChannel segment;
+    private final Thread writer;
+    private final ExecutorService snapshotter;
+
+    public WalCounterService(CounterThreads threads,
+                             @Value("${counter.wal.dir:}") String dir,
+                             @Value("${counter.wal.sync:true}") boolean sync,
+                             @Value("${counter.wal.snapshot-after:64MB}") DataSize snapshotAfter) throws IOException {
+        this.temporary = dir.isBlank();
+        this.dir = temporary ? Files.createTempDirectory("counters-wal") : Files.createDirectories(Path.of(dir));
+        this.sync = sync;
+        this.snapshotAfter = snapshotAfter.toBytes();
+
+        long started = System.nanoTime();
+        recover();
+        counters.forEach((name, count) -> ranking.add(new Counter(name, count)));
+        log.info("Recovered {} counters up to log record {} in {} ms", counters.size(), lastSequence,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        durableSequence = lastSequence;
+        segment = openSegment(lastSequence + 1);
+
+        this.snapshotter = Executors.newSingleThreadExecutor(threads.factory("counter-snapshot"));
+        this.writer = threads.factory("counter-wal").newThread(this::writeLoop);
+        writer.start();
+    }
+
+    @Override
+    public List<Counter> findAll() {
+        List<Counter> result = new ArrayList<>(counters.size());
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public void forEach(Consumer<Counter> action) {
+        counters.forEach((name, count) -> action.accept(new Counter(name, count)));
+    }
+
+    // The counters map is sorted by name, so a range is a view of it
+    @Override
+    public List<Counter> range(CounterRange range, String after, int limit) {
+        List<Counter> page = new ArrayList<>();
+        for (Map.Entry<String, Integer> counter : range.view(counters, after).entrySet()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(new Counter(counter.getKey(), counter.getValue()));
+        }
+        return page;
+    }
+
+    // A counter whose count is changing can be ranked twice for a moment, so names are only taken once
+    @Override
+    public List<Counter> top(int k) {
+        List<Counter> top = new ArrayList<>(k);
+        Set<String> ranked = new HashSet<>();
+        for (Counter counter : ranking) {
+            if (top.size() == k) {
+                break;
+            }
+            if (ranked.add(counter.getName())) {
+                top.add(counter);
+            }
+        }
+        return top;
+    }
+
+    @Override
+    public CounterAggregate aggregate(CounterRange range) {
+        long number = 0;
+        long sum = 0;
+        for (int count : range.view(counters, null).values()) {
+            number++;
+            sum += count;
+        }
+        return new CounterAggregate(number, sum);
+    }
+
+    @Override
+    public Counter save(Counter newCounter) {
+        long sequence;
+        appendLock.lock();
+        try {
+            sequence = append(SET, newCounter.getName(), newCounter.getCount());
+            set(newCounter.getName(), newCounter.getCount());
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(sequence);
+        return newCounter;
+    }
+
+    // One append lock and one wait for the log, instead of one of each per counter
+    @Override
+    public void saveAll(List<Counter> newCounters) {
+        long sequence;
+        appendLock.lock();
+        try {
+            checkWritable();
+            newCounters.forEach(counter -> checkName(counter.getName()));
+            for (Counter counter : newCounters) {
+                encode(SET, counter.getName(), counter.getCount());
+                set(counter.getName(), counter.getCount());
+            }
+            sequence = lastSequence;
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public Counter findById(String name) {
+        Integer count = counters.get(name);
+        if (count == null) {
+            throw new CounterNotFoundException(name);
+        }
+        return new Counter(name, count);
+    }
+
+    @Override
+    public void increaseCounter(String name) {
+        long sequence;
+        appendLock.lock();
+        try {
+            Integer count = counters.get(name);
+            if (count == null) {
+                throw new CounterNotFoundException(name);
+            }
+            sequence = append(SET, name, count + 1);
+            set(name, count + 1);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public boolean deleteCounter(String name) {
+        long sequence;
+        boolean removed;
+        appendLock.lock();
+        try {
+            Integer count = counters.get(name);
+            if (count == null) {
+                throw new CounterNotFoundException(name);
+            }
+            removed = count <= 1;
+            if (!removed) {
+                sequence = append(SET, name, count - 1);
+                set(name, count - 1);
+            } else {
+                sequence = append(REMOVE, name, 0);
+                drop(name);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(sequence);
+        return removed;
+    }
+
+    // The whole batch is applied under the append lock, so it is atomic for readers of the log
+    @Override
+    public Map<String, Integer> increaseCounters(Map<String, Integer> deltas, boolean createMissing) {
+        Map<String, Integer> counts = new HashMap<>();
+        long sequence;
+        appendLock.lock();
+        try {
+            checkWritable();
+            deltas.keySet().forEach(WalCounterService::checkName);
+            for (Map.Entry<String, Integer> entry : new TreeMap<>(deltas).entrySet()) {
+                String name = entry.getKey();
+                int delta = entry.getValue();
+                Integer count = counters.get(name);
+                if (count != null && count + delta > 0) {
+                    encode(SET, name, count + delta);
+                    set(name, count + delta);
+                    counts.put(name, count + delta);
+                } else if (count != null) {
+                    encode(REMOVE, name, 0);
+                    drop(name);
+                    counts.put(name, 0);
+                } else if (createMissing) {
+                    if (delta > 0) {
+                        encode(SET, name, delta);
+                        set(name, delta);
+                    }
+                    counts.put(name, Math.max(delta, 0));
+                }
+            }
+            sequence = lastSequence;
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(sequence);
+        return counts;
+    }
+
+    @PreDestroy
+    public void close() throws Exception {
+        appendLock.lock();
+        try {
+            running = false;
+            appended.signal();
+        } finally {
+            appendLock.unlock();
+        }
+        writer.join();
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        segment.close();
+        if (temporary) {
+            FileSystemUtils.deleteRecursively(dir);
+        }
+    }
+
+    // Changes a count in the map and the ranking; the caller holds the append lock. The new entry is ranked
+    // before the old one leaves, so top() may see a counter twice but never misses it.
+    private void set(String name, int count) {
+        Integer previous = counters.put(name, count);
+        ranking.add(new Counter(name, count));
+        if (previous != null && previous != count) {
+            ranking.remove(new Counter(name, previous));
+        }
+    }
+
+    private void drop(String name) {
+        Integer previous = counters.remove(name);
+        if (previous != null) {
+            ranking.remove(new Counter(name, previous));
+        }
+    }
+
+    // Encodes one record into the pending buffer, or throws if the log takes no more records. The caller
+    // holds the append lock and changes the map only after this returned.
+    private long append(byte type, String name, int value) {
+        checkWritable();
+        checkName(name);
+        return encode(type, name, value);
+    }
+
+    // Records store the name length in a signed short, so longer names could not be replayed
+    private static void checkName(String name) {
+        if (name.length() * 3 > Short.MAX_VALUE && name.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Counter names are limited to " + Short.MAX_VALUE + " bytes");
+        }
+    }
+
+    // Batches check once up front, so they are either refused as a whole or encoded as a whole
+    private void checkWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Counter log is not writable", failure);
+        }
+        if (!running) {
+            throw new IllegalStateException("The counter log is closed");
+        }
+    }
+
+    private long encode(byte type, String name, int value) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = BODY_FIXED + nameBytes.length;
+        if (pending.remaining() < RECORD_HEADER + bodyLength) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + RECORD_HEADER + bodyLength));
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        long sequence = ++lastSequence;
+        int start = pending.position();
+        pending.putInt(bodyLength).putInt(0)
+                .putLong(sequence).put(type).putInt(value).putShort((short) nameBytes.length).put(nameBytes);
+        appendCrc.reset();
+        appendCrc.update(pending.array(), start + RECORD_HEADER, bodyLength);
+        pending.putInt(start + 4, (int) appendCrc.getValue());
+        appended.signal();
+        return sequence;
+    }
+
+    private void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Counter log is not writable", failure);
+                }
+                durableChanged.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            long upTo;
+            boolean snapshot = false;
+            FileChannel previous = null;
+            appendLock.lock();
+            try {
+                while (pending.position() == 0 && running) {
+                    appended.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer taken = pending;
+                pending = writing;
+                writing = taken;
+                upTo = lastSequence;
+                segmentBytes += writing.position();
+                if (segmentBytes >= snapshotAfter) {
+                    snapshot = true;
+                    previous = segment;
+                    segment = openSegment(upTo + 1);
+                    segmentBytes = 0;
+                }
+            } catch (IOException ex) {
+                fail(ex);
+                return;
+            } finally {
+                appendLock.unlock();
+            }
+
+            try {
+                FileChannel target = previous != null ? previous : segment;
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    target.write(writing);
+                }
+                writing.clear();
+                if (sync) {
+                    target.force(false);
+                }
+                if (previous != null) {
+                    previous.close();
+                }
+            } catch (IOException ex) {
+                fail(ex);
+                return;
+            }
+
+            durableLock.lock();
+            try {
+                durableSequence = upTo;
+                durableChanged.signalAll();
+            } finally {
+                durableLock.unlock();
+            }
+
+            if (snapshot) {
+                snapshotter.execute(() -> writeSnapshot(upTo));
+            }
+        }
+    }
+
+    private void fail(IOException ex) {
+        log.error("Writing the counter log failed; further changes are rejected", ex);
+        durableLock.lock();
+        try {
+            failure = ex;
+            durableChanged.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    // The copy is taken without the append lock: it holds every change up to sequence, which ends the
+    // previous segment, and possibly some later ones, which replaying the next segment sets again
+    private void writeSnapshot(long sequence) {
+        Map<String, Integer> state = new HashMap<>(counters);
+        Path target = dir.resolve(SNAPSHOT_PREFIX + pad(sequence) + SNAPSHOT_SUFFIX);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        try {
+            CRC32C crc = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                buffer.putLong(SNAPSHOT_MAGIC).putLong(sequence).putInt(state.size());
+                for (Map.Entry<String, Integer> entry : state.entrySet()) {
+                    byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    if (buffer.remaining() < 2 + name.length + 4 + 4) {
+                        drain(channel, buffer, crc);
+                    }
+                    buffer.putShort((short) name.length).put(name).putInt(entry.getValue());
+                }
+                drain(channel, buffer, crc);
+                buffer.putInt((int) crc.getValue()).flip();
+                channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+            // Everything up to the snapshot sequence is now covered, so older files can go
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    String name = file.getFileName().toString();
+                    if ((name.startsWith(SEGMENT_PREFIX) && parse(name, SEGMENT_PREFIX) <= sequence)
+                            || (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)
+                                && parse(name, SNAPSHOT_PREFIX) < sequence)) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            // The log segments are kept, so recovery still works from the previous snapshot
+            log.warn("Writing counter snapshot {} failed", target, ex);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.add(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(file);
+                }
+            }
+        }
+
+        long snapshotSequence = 0;
+        for (int i = snapshots.size() - 1; i >= 0 && snapshotSequence == 0; i--) {
+            snapshotSequence = readSnapshot(snapshots.get(i));
+        }
+        lastSequence = snapshotSequence;
+
+        for (int i = 0; i < segments.size(); i++) {
+            if (!replay(segments.get(i), snapshotSequence)) {
+                // Later segments would leave a gap in the sequence; keep them aside instead of replaying them
+                for (Path later : segments.subList(i + 1, segments.size())) {
+                    Files.move(later, later.resolveSibling(later.getFileName() + ".discarded"));
+                }
+                break;
+            }
+        }
+    }
+
+    // Returns the sequence the snapshot covers, or 0 if it is damaged
+    private long readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, Math.max(buffer.limit() - 4, 0));
+        if (buffer.limit() < 24 || buffer.getLong(0) != SNAPSHOT_MAGIC
+                || buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()) {
+            log.warn("Ignoring damaged counter snapshot {}", file);
+            return 0;
+        }
+        counters.clear();
+        buffer.position(8);
+        long sequence = buffer.getLong();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            counters.put(new String(name, StandardCharsets.UTF_8), buffer.getInt());
+        }
+        return sequence;
+    }
+
+    // Applies the records after the snapshot; a damaged record ends the log and the segment is cut there
+    private boolean replay(Path file, long after) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int start = buffer.position();
+            int bodyLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (bodyLength < BODY_FIXED || bodyLength > buffer.remaining()) {
+                return truncate(file, start);
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), bodyLength);
+            if ((int) crc.getValue() != checksum) {
+                return truncate(file, start);
+            }
+            long sequence = buffer.getLong();
+            byte type = buffer.get();
+            int value = buffer.getInt();
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            if (sequence > after) {
+                apply(type, new String(name, StandardCharsets.UTF_8), value);
+                lastSequence = sequence;
+            }
+        }
+        return buffer.remaining() == 0 || truncate(file, buffer.position());
+    }
+
+    private boolean truncate(Path file, int length) throws IOException {
+        log.warn("Counter log {} ends in an incomplete record at byte {}; discarding the rest of the log", file, length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+        return false;
+    }
+
+    private void apply(byte type, String name, int value) {
+        switch (type) {
+            case SET -> counters.put(name, value);
+            case REMOVE -> counters.remove(name);
+            default -> throw new IllegalStateException("Unknown counter log record type " + type);
+        }
+    }
+
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        return FileChannel.open(dir.resolve(SEGMENT_PREFIX + pad(firstSequence) + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.array(), 0, buffer.limit());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static String pad(long sequence) {
+        return String.format("%020d", sequence);
+    }
+
+    private static long parse(String fileName, String prefix) {
+        return Long.parseLong(fileName.substring(prefix.length(), prefix.length() + 20));
+    }
+}
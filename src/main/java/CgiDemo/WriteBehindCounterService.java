@@ -0,0 +1,338 @@
+package CgiDemo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Accumulates increments in memory and writes them to the database in JDBC batches, so a burst
+ * of PUTs on a hot counter costs one UPDATE per flush instead of one per request.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "counter.engine", havingValue = "write-behind")
+public class WriteBehindCounterService implements CounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCounterService.class);
+
+    private static final String FLUSH_SQL = "update counter set count = count + ? where name = ?";
+
+    private final CounterRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CounterBatchWriter batchWriter;
+    private final CounterMetrics metrics;
+    private final int flushThreshold;
+    private final long maxUnflushedDelta;
+
+    // One adder per counter known to exist; entries are only removed when the counter is deleted.
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    // Readers hold the read lock so they never observe a delta that was taken out of memory
+    // but has not reached the database yet.
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    // Increments hold the read lock and changes that can delete counters the write lock, so no increment
+    // lands between the flush such a change starts with and its decision to drop the counter's adder.
+    // Flushing does not take it, so increments never wait for the database.
+    private final ReadWriteLock deleteLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService flusher;
+
+    @Autowired
+    public WriteBehindCounterService(CounterRepository repository,
+                                     JdbcTemplate jdbcTemplate,
+                                     CounterBatchWriter batchWriter,
+                                     CounterThreads threads,
+                                     CounterMetrics metrics,
+                                     @Value("${counter.write-behind.flush-interval:100ms}") Duration flushInterval,
+                                     @Value("${counter.write-behind.flush-threshold:1000}") int flushThreshold,
+                                     @Value("${counter.write-behind.max-unflushed-delta:10000}") long maxUnflushedDelta) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchWriter = batchWriter;
+        this.metrics = metrics;
+        this.flushThreshold = flushThreshold;
+        this.maxUnflushedDelta = maxUnflushedDelta;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(threads.factory("counter-flusher"));
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<Counter> findAll() {
+        flushLock.readLock().lock();
+        try {
+            return repository.findAll().stream().map(this::withPending).toList();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<Counter> findAll(Pageable pageable) {
+        flushLock.readLock().lock();
+        try {
+            return repository.findAll(pageable).map(this::withPending);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Not guarded by the flush lock: an export may run for a long time and must not stall flushing,
+    // so a row that is flushed mid-stream can transiently miss its latest increments.
+    @Override
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Counter> action) {
+        try (Stream<Counter> counters = repository.streamAll()) {
+            counters.map(this::withPending).forEach(action);
+        }
+    }
+
+    @Override
+    public Counter save(Counter newCounter) {
+        flushLock.readLock().lock();
+        try {
+            // An explicit value replaces whatever was still waiting to be flushed.
+            LongAdder delta = pending.get(newCounter.getName());
+            if (delta != null) {
+                delta.reset();
+            }
+            return repository.save(newCounter);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(List<Counter> counters) {
+        flushLock.readLock().lock();
+        try {
+            for (Counter counter : counters) {
+                LongAdder delta = pending.get(counter.getName());
+                if (delta != null) {
+                    delta.reset();
+                }
+            }
+            batchWriter.set(counters);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Counter findById(String name) {
+        flushLock.readLock().lock();
+        try {
+            return withPending(repository.findById(name).orElseThrow(() -> new CounterNotFoundException(name)));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Counter> findAllById(Collection<String> names) {
+        flushLock.readLock().lock();
+        try {
+            return repository.findAllByIdInChunks(names).stream().map(this::withPending).toList();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Counter> range(CounterRange range, String after, int limit) {
+        flushLock.readLock().lock();
+        try {
+            return repository.findRange(range, after, Limit.of(limit)).stream().map(this::withPending).toList();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // The sum is computed by the database, so pending deltas are flushed first
+    @Override
+    public CounterAggregate aggregate(CounterRange range) {
+        flush();
+        flushLock.readLock().lock();
+        try {
+            return repository.aggregate(range);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Pending deltas are increments, so they can only move a counter up: the top rows of the index plus the
+    // counters with pending deltas contain the top k, without flushing first
+    @Override
+    public List<Counter> top(int k) {
+        flushLock.readLock().lock();
+        try {
+            Map<String, Counter> candidates = new HashMap<>();
+            for (Counter counter : repository.findTop(Limit.of(k))) {
+                candidates.put(counter.getName(), withPending(counter));
+            }
+            if (!dirty.isEmpty()) {
+                for (Counter counter : repository.findAllByIdInChunks(List.copyOf(dirty))) {
+                    candidates.put(counter.getName(), withPending(counter));
+                }
+            }
+            return candidates.values().stream().sorted(CounterService.topOrder()).limit(k).toList();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void increaseCounter(String name) {
+        LongAdder delta;
+        boolean marked;
+        deleteLock.readLock().lock();
+        try {
+            delta = pending.get(name);
+            if (delta == null) {
+                if (!repository.existsById(name)) {
+                    throw new CounterNotFoundException(name);
+                }
+                delta = pending.computeIfAbsent(name, key -> new LongAdder());
+            }
+            delta.increment();
+            marked = dirty.add(name);
+        } finally {
+            deleteLock.readLock().unlock();
+        }
+        if (marked && dirty.size() >= flushThreshold) {
+            flusher.execute(this::flushQuietly);
+        }
+        if (delta.sum() >= maxUnflushedDelta) {
+            flush();
+        }
+    }
+
+    // With increments held off, the flush leaves nothing pending, so the database alone decides the outcome
+    @Override
+    public boolean deleteCounter(String name) {
+        deleteLock.writeLock().lock();
+        flushLock.writeLock().lock();
+        try {
+            flush();
+            while (repository.decrementIfAboveOne(name) == 0) {
+                if (repository.deleteIfAtMostOne(name) == 1) {
+                    pending.remove(name);
+                    return true;
+                }
+                if (!repository.existsById(name)) {
+                    pending.remove(name);
+                    throw new CounterNotFoundException(name);
+                }
+            }
+            return false;
+        } finally {
+            flushLock.writeLock().unlock();
+            deleteLock.writeLock().unlock();
+        }
+    }
+
+    // A batch is already a single round trip, so it is written through rather than buffered.
+    @Override
+    public Map<String, Integer> increaseCounters(Map<String, Integer> deltas, boolean createMissing) {
+        deleteLock.writeLock().lock();
+        flushLock.writeLock().lock();
+        try {
+            flush();
+            Map<String, Integer> counts = batchWriter.apply(new TreeMap<>(deltas), createMissing);
+            counts.forEach((name, count) -> {
+                if (count <= 0) {
+                    pending.remove(name);
+                }
+            });
+            return counts;
+        } finally {
+            flushLock.writeLock().unlock();
+            deleteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every pending delta to the database in a single JDBC batch.
+     */
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            List<String> names = new ArrayList<>();
+            List<Object[]> batch = new ArrayList<>();
+            for (String name : dirty) {
+                dirty.remove(name);
+                LongAdder delta = pending.get(name);
+                long sum = delta == null ? 0 : delta.sumThenReset();
+                if (sum != 0) {
+                    names.add(name);
+                    batch.add(new Object[] {sum, name});
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+                metrics.dbRoundTrip();
+            } catch (RuntimeException ex) {
+                // Put the deltas back so the next flush retries them.
+                for (int i = 0; i < batch.size(); i++) {
+                    pending.computeIfAbsent(names.get(i), key -> new LongAdder()).add((long) batch.get(i)[0]);
+                    dirty.add(names.get(i));
+                }
+                throw ex;
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Flushing pending counter increments failed, will retry", ex);
+        }
+    }
+
+    private Counter withPending(Counter counter) {
+        LongAdder delta = pending.get(counter.getName());
+        long sum = delta == null ? 0 : delta.sum();
+        return sum == 0 ? counter : new Counter(counter.getName(), (int) (counter.getCount() + sum));
+    }
+}
@@ -0,0 +1,6 @@
+create table if not exists counter (
+    name varchar(255) not null primary key,
+    count integer not null
+);
+
+create index if not exists counter_count_idx on counter (count desc, name);
@@ -0,0 +1,111 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterBatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterBatchE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // Test for POST /counters/increments
+    @Test
+    public void testIncreaseCounters() {
+        restTemplate.postForEntity(baseUrl, new Counter("batchA", 5), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("batchB", 2), Counter.class);
+
+        Map<String, Integer> deltas = Map.of("batchA", 3, "batchB", -2, "batchMissing", 4);
+        ResponseEntity<CounterBatchResult> response =
+                restTemplate.postForEntity(baseUrl + "/increments", deltas, CounterBatchResult.class);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().counts()).containsOnly(Map.entry("batchA", 8), Map.entry("batchB", 0));
+        assertThat(response.getBody().missing()).containsExactly("batchMissing");
+
+        assertThat(restTemplate.getForObject(baseUrl + "/batchA", Counter.class).getCount()).isEqualTo(8);
+        assertThat(restTemplate.getForEntity(baseUrl + "/batchB", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(restTemplate.getForEntity(baseUrl + "/batchMissing", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    // Test for POST /counters/increments?create=true
+    @Test
+    public void testIncreaseCountersCreatesMissing() {
+        restTemplate.postForEntity(baseUrl, new Counter("batchC", 1), Counter.class);
+
+        ResponseEntity<CounterBatchResult> response = restTemplate.postForEntity(baseUrl + "/increments?create=true",
+                Map.of("batchC", 2, "batchNew", 7), CounterBatchResult.class);
+
+        assertThat(response.getBody().counts()).containsOnly(Map.entry("batchC", 3), Map.entry("batchNew", 7));
+        assertThat(response.getBody().missing()).isEmpty();
+        assertThat(restTemplate.getForObject(baseUrl + "/batchNew", Counter.class).getCount()).isEqualTo(7);
+    }
+
+    // Overlapping batches must neither deadlock nor lose increments
+    @Test
+    public void testOverlappingBatches() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            names.add("overlap" + i);
+            restTemplate.postForEntity(baseUrl, new Counter("overlap" + i, 1), Counter.class);
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        List<Future<ResponseEntity<CounterBatchResult>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Integer> deltas = new HashMap<>();
+            for (int j = 0; j < 10; j++) {
+                deltas.put(names.get((i * 7 + j * 3) % names.size()), 1);
+            }
+            responses.add(clients.submit(() ->
+                    restTemplate.postForEntity(baseUrl + "/increments", deltas, CounterBatchResult.class)));
+        }
+        int expectedTotal = 0;
+        for (Future<ResponseEntity<CounterBatchResult>> response : responses) {
+            assertThat(response.get().getStatusCode().is2xxSuccessful()).isTrue();
+            expectedTotal += response.get().getBody().counts().size();
+        }
+        clients.shutdown();
+
+        int total = 0;
+        for (String name : names) {
+            total += restTemplate.getForObject(baseUrl + "/" + name, Counter.class).getCount() - 1;
+        }
+        assertThat(total).isEqualTo(expectedTotal);
+    }
+}
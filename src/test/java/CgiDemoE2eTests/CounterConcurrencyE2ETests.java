@@ -0,0 +1,116 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterConcurrencyE2ETests {
+
+    private static final int REQUESTS = 2000;
+    private static final int CLIENTS = 64;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // Concurrent PUTs must not lose increments
+    @Test
+    public void testConcurrentIncreasesAreNotLost() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("concurrentUp", 1), Counter.class);
+
+        List<HttpStatus> statuses = fire(HttpMethod.PUT, baseUrl + "/concurrentUp", REQUESTS);
+        assertThat(statuses).containsOnly(HttpStatus.OK);
+
+        Counter counter = restTemplate.getForObject(baseUrl + "/concurrentUp", Counter.class);
+        assertThat(counter.getCount()).isEqualTo(REQUESTS + 1);
+    }
+
+    // Concurrent asynchronous PUTs are accepted with 202 and all applied shortly after
+    @Test
+    public void testConcurrentAsyncIncreasesAreNotLost() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("concurrentAsync", 1), Counter.class);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Prefer", "respond-async");
+        List<HttpStatus> statuses = fire(HttpMethod.PUT, baseUrl + "/concurrentAsync", new HttpEntity<>(headers), REQUESTS);
+        assertThat(statuses).containsOnly(HttpStatus.ACCEPTED);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        int count;
+        do {
+            Thread.sleep(20);
+            count = restTemplate.getForObject(baseUrl + "/concurrentAsync", Counter.class).getCount();
+        } while (count < REQUESTS + 1 && System.currentTimeMillis() < deadline);
+        assertThat(count).isEqualTo(REQUESTS + 1);
+    }
+
+    // Concurrent DELETEs must each decrement once and remove the counter exactly when it reaches 0
+    @Test
+    public void testConcurrentDecreasesAreNotLost() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("concurrentDown", REQUESTS), Counter.class);
+
+        List<HttpStatus> statuses = fire(HttpMethod.DELETE, baseUrl + "/concurrentDown", REQUESTS - 1);
+        assertThat(statuses).containsOnly(HttpStatus.OK);
+
+        Counter counter = restTemplate.getForObject(baseUrl + "/concurrentDown", Counter.class);
+        assertThat(counter.getCount()).isEqualTo(1);
+
+        statuses = fire(HttpMethod.DELETE, baseUrl + "/concurrentDown", CLIENTS);
+        assertThat(statuses).containsOnlyOnce(HttpStatus.OK);
+        assertThat(statuses).filteredOn(status -> status == HttpStatus.NOT_FOUND).hasSize(CLIENTS - 1);
+    }
+
+    private List<HttpStatus> fire(HttpMethod method, String url, int requests) throws Exception {
+        return fire(method, url, null, requests);
+    }
+
+    private List<HttpStatus> fire(HttpMethod method, String url, HttpEntity<?> request, int requests) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(clients.submit(() -> restTemplate.exchange(url, method, request, String.class)));
+            }
+
+            List<HttpStatus> statuses = new ArrayList<>();
+            for (Future<ResponseEntity<String>> response : responses) {
+                statuses.add(HttpStatus.valueOf(response.get().getStatusCode().value()));
+            }
+            return statuses;
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterETagE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // Polling a counter only downloads it again after it changed
+    @Test
+    public void testConditionalGetCounter() {
+        restTemplate.postForEntity(baseUrl, new Counter("etagA", 1), Counter.class);
+
+        ResponseEntity<String> first = restTemplate.getForEntity(baseUrl + "/etagA", String.class);
+        String etag = first.getHeaders().getETag();
+        assertThat(etag).startsWith("\"");
+
+        ResponseEntity<String> unchanged = getIfNoneMatch(baseUrl + "/etagA", etag);
+        assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(unchanged.getBody()).isNull();
+
+        restTemplate.put(baseUrl + "/etagA", null);
+        ResponseEntity<String> changed = getIfNoneMatch(baseUrl + "/etagA", etag);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+        assertThat(changed.getBody()).contains("\"count\":2");
+
+        // A removed counter is reported as missing, not as unchanged
+        restTemplate.delete(baseUrl + "/etagA");
+        String decremented = restTemplate.getForEntity(baseUrl + "/etagA", String.class).getHeaders().getETag();
+        restTemplate.delete(baseUrl + "/etagA");
+        assertThat(getIfNoneMatch(baseUrl + "/etagA", decremented).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    // The collection ETag changes with any counter
+    @Test
+    public void testConditionalGetCollection() {
+        String etag = restTemplate.getForEntity(baseUrl, String.class).getHeaders().getETag();
+        assertThat(getIfNoneMatch(baseUrl, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        restTemplate.postForEntity(baseUrl, new Counter("etagB", 1), Counter.class);
+        ResponseEntity<String> changed = getIfNoneMatch(baseUrl, etag);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getBody()).contains("etagB");
+    }
+
+    private ResponseEntity<String> getIfNoneMatch(String url, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+}
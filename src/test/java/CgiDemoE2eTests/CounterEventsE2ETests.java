@@ -0,0 +1,135 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@TestPropertySource(properties = {"counter.events.interval=300ms", "counter.events.buffer-size=3"})
+@DirtiesContext
+public class CounterEventsE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // A burst of increments on one counter arrives as a few events carrying the latest count
+    @Test
+    public void testChangesAreCoalesced() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("eventsA", 1), Counter.class);
+        BlockingQueue<String> lines = subscribe(baseUrl + "/eventsA/changes");
+
+        assertThat(nextData(lines)).contains("\"name\":\"eventsA\"").contains("\"count\":1");
+        for (int i = 0; i < 50; i++) {
+            restTemplate.put(baseUrl + "/eventsA", null);
+        }
+
+        int events = 0;
+        String data;
+        do {
+            data = nextData(lines);
+            assertThat(data).isNotNull();
+            events++;
+        } while (!data.contains("\"count\":51"));
+        assertThat(events).isLessThan(50);
+
+        restTemplate.postForEntity(baseUrl + "/increments", Map.of("eventsA", -51), String.class);
+        assertThat(nextEvent(lines)).isEqualTo("removed");
+    }
+
+    // Other counters are not sent to a subscriber of a set of names
+    @Test
+    public void testSubscribeToNames() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("eventsB", 1), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("eventsC", 1), Counter.class);
+        BlockingQueue<String> lines = subscribe(baseUrl + "/changes?names=eventsB,missingEvents");
+
+        // Current state first, including the missing counter
+        assertThat(List.of(nextEvent(lines), nextEvent(lines))).containsExactlyInAnyOrder("counter", "removed");
+
+        restTemplate.put(baseUrl + "/eventsC", null);
+        restTemplate.put(baseUrl + "/eventsB", null);
+        assertThat(nextData(lines)).contains("\"name\":\"eventsB\"").contains("\"count\":2");
+    }
+
+    // A subscriber that falls more than buffer-size counters behind is told so and disconnected
+    @Test
+    public void testOverflow() throws Exception {
+        BlockingQueue<String> lines = subscribe(baseUrl + "/changes");
+        restTemplate.postForEntity(baseUrl + "/increments?create=true",
+                Map.of("over1", 1, "over2", 1, "over3", 1, "over4", 1, "over5", 1), String.class);
+
+        assertThat(nextEvent(lines)).isEqualTo("overflow");
+    }
+
+    private BlockingQueue<String> subscribe(String url) {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Accept", "text/event-stream").build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> {
+                    try (Stream<String> body = response.body()) {
+                        body.forEach(lines::add);
+                    }
+                });
+        return lines;
+    }
+
+    // The next event as {name, data}, or null if none arrives in time
+    private String[] next(BlockingQueue<String> lines) throws InterruptedException {
+        String[] event = new String[2];
+        String line;
+        while ((line = lines.poll(5, TimeUnit.SECONDS)) != null) {
+            if (line.startsWith("event:")) {
+                event[0] = line.substring("event:".length());
+            } else if (line.startsWith("data:")) {
+                event[1] = line.substring("data:".length());
+            } else if (line.isEmpty() && event[0] != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private String nextEvent(BlockingQueue<String> lines) throws InterruptedException {
+        String[] event = next(lines);
+        return event == null ? null : event[0];
+    }
+
+    private String nextData(BlockingQueue<String> lines) throws InterruptedException {
+        String[] event = next(lines);
+        return event == null ? null : event[1];
+    }
+}
@@ -0,0 +1,169 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterExpirySweeper;
+import CgiDemo.CounterLookupResult;
+import CgiDemoE2eTests.CounterRatesE2ETests.SettableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "counter.expiry.patterns=session.*=30m",
+        "counter.expiry.sweep-interval=1h"
+})
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@Import(CounterRatesE2ETests.Config.class)
+@DirtiesContext
+public class CounterExpiryE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SettableClock clock;
+
+    @Autowired
+    private CounterExpirySweeper sweeper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // An expired counter is missing everywhere before it is swept, and its row is gone after
+    @Test
+    public void testExpiredCounterIsMissing() {
+        restTemplate.postForEntity(baseUrl + "?ttl=10m", new Counter("expiring", 3), Counter.class);
+        assertThat(status(HttpMethod.GET, "/expiring")).isEqualTo(HttpStatus.OK);
+
+        clock.advance(Duration.ofMinutes(11));
+        assertThat(status(HttpMethod.GET, "/expiring")).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(status(HttpMethod.PUT, "/expiring")).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(status(HttpMethod.DELETE, "/expiring")).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(restTemplate.getForObject(baseUrl, String.class)).doesNotContain("\"expiring\"");
+        assertThat(restTemplate.getForObject(baseUrl + "/range?prefix=expiring", String.class)).doesNotContain("\"expiring\"");
+        assertThat(restTemplate.getForObject(baseUrl + "/top?k=1000", String.class)).doesNotContain("\"expiring\"");
+        assertThat(restTemplate.getForObject(baseUrl + "?names=expiring", CounterLookupResult.class).missing())
+                .containsExactly("expiring");
+        assertThat(rows("expiring")).isEqualTo(1);
+
+        assertThat(sweeper.sweep()).isGreaterThanOrEqualTo(1);
+        assertThat(rows("expiring")).isZero();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from counter_expiry where name = 'expiring'", Integer.class))
+                .isZero();
+    }
+
+    // Increments push an idle deadline back; the sweeper only postpones such a row
+    @Test
+    public void testIdleExpiry() {
+        restTemplate.postForEntity(baseUrl + "?idle=10m", new Counter("idling", 1), Counter.class);
+
+        clock.advance(Duration.ofMinutes(8));
+        restTemplate.put(baseUrl + "/idling", null);
+        clock.advance(Duration.ofMinutes(8));
+        sweeper.sweep();
+        assertThat(restTemplate.getForObject(baseUrl + "/idling", Counter.class).getCount()).isEqualTo(2);
+
+        clock.advance(Duration.ofMinutes(3));
+        assertThat(status(HttpMethod.GET, "/idling")).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    // A moved idle deadline is written back once the stored one is close, so a restart does not expire the counter
+    @Test
+    public void testIdleDeadlineIsStored() {
+        restTemplate.postForEntity(baseUrl + "?idle=10m", new Counter("stored", 1), Counter.class);
+        long created = storedDeadline("stored");
+
+        clock.advance(Duration.ofMinutes(2));
+        restTemplate.put(baseUrl + "/stored", null);
+        assertThat(storedDeadline("stored")).isEqualTo(created);
+
+        clock.advance(Duration.ofMinutes(4));
+        restTemplate.put(baseUrl + "/stored", null);
+        assertThat(storedDeadline("stored")).isEqualTo(created + Duration.ofMinutes(6).toMillis());
+    }
+
+    // A cached representation of an expired counter is not confirmed with 304
+    @Test
+    public void testExpiredCounterIsNotConfirmed() {
+        restTemplate.postForEntity(baseUrl + "?ttl=1m", new Counter("cached", 1), Counter.class);
+        String etag = restTemplate.getForEntity(baseUrl + "/cached", String.class).getHeaders().getETag();
+
+        clock.advance(Duration.ofMinutes(2));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        assertThat(restTemplate.exchange(baseUrl + "/cached", HttpMethod.GET, new HttpEntity<>(headers), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    // Counters matching a pattern get idle expiry without asking for it; others never expire
+    @Test
+    public void testPatternExpiry() {
+        restTemplate.postForEntity(baseUrl, new Counter("session.1234", 1), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("sessions", 1), Counter.class);
+
+        clock.advance(Duration.ofMinutes(31));
+        assertThat(status(HttpMethod.GET, "/session.1234")).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(status(HttpMethod.GET, "/sessions")).isEqualTo(HttpStatus.OK);
+    }
+
+    // A batch that creates an expired counter starts it over instead of adding to its old count
+    @Test
+    public void testExpiredCounterIsCreatedAgain() {
+        restTemplate.postForEntity(baseUrl + "?ttl=1m", new Counter("reborn", 50), Counter.class);
+        clock.advance(Duration.ofMinutes(2));
+
+        restTemplate.postForObject(baseUrl + "/increments?create=true", Map.of("reborn", 2), String.class);
+        assertThat(restTemplate.getForObject(baseUrl + "/reborn", Counter.class).getCount()).isEqualTo(2);
+
+        clock.advance(Duration.ofDays(1));
+        assertThat(status(HttpMethod.GET, "/reborn")).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void testInvalidTtl() {
+        assertThat(restTemplate.postForEntity(baseUrl + "?ttl=0s", new Counter("invalid", 1), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(restTemplate.postForEntity(baseUrl + "?ttl=1m&idle=1m", new Counter("invalid", 1), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(status(HttpMethod.GET, "/invalid")).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private long storedDeadline(String name) {
+        return jdbcTemplate.queryForObject("select expires_at from counter_expiry where name = ?", Long.class, name);
+    }
+
+    private HttpStatus status(HttpMethod method, String path) {
+        return HttpStatus.valueOf(restTemplate.exchange(baseUrl + path, method, null, String.class).getStatusCode().value());
+    }
+
+    private int rows(String name) {
+        return jdbcTemplate.queryForObject("select count(*) from counter where name = ?", Integer.class, name);
+    }
+}
@@ -0,0 +1,144 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterImportResult;
+import CgiDemo.CounterLookupResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@TestPropertySource(properties = "counter.import.batch-size=1000")
+@DirtiesContext
+public class CounterImportE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @DynamicPropertySource
+    static void importFile(DynamicPropertyRegistry registry) throws IOException {
+        Path file = Files.createTempFile("counters", ".csv");
+        Files.writeString(file, "name,count\nseeded1,11\nseeded2,12\n");
+        file.toFile().deleteOnExit();
+        registry.add("counter.import.file", file::toString);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    @Test
+    public void testFileImportedAtStartup() {
+        assertThat(restTemplate.getForObject(baseUrl + "/seeded2", Counter.class).getCount()).isEqualTo(12);
+    }
+
+    // Several batches of NDJSON; imported counters replace existing ones
+    @Test
+    public void testImportNdjson() {
+        restTemplate.postForEntity(baseUrl, new Counter("bulk00042", 1), Counter.class);
+        String body = IntStream.range(0, 2500)
+                .mapToObj(i -> "{\"name\":\"bulk%05d\",\"count\":%d}".formatted(i, i))
+                .collect(Collectors.joining("\n"));
+
+        ResponseEntity<CounterImportResult> response = post(body, MediaType.APPLICATION_NDJSON, CounterImportResult.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().imported()).isEqualTo(2500);
+        assertThat(restTemplate.getForObject(baseUrl + "/bulk00042", Counter.class).getCount()).isEqualTo(42);
+        assertThat(restTemplate.getForObject(baseUrl + "/aggregate?prefix=bulk", String.class))
+                .isEqualTo("{\"counters\":2500,\"sum\":3123750}");
+    }
+
+    // CSV with a header and a quoted name survives an export and import round trip
+    @Test
+    public void testCsvRoundTrip() {
+        ResponseEntity<CounterImportResult> response = post("name,count\ncsvA,3\n\"csv,\"\"B\"\"\",4\n",
+                MediaType.valueOf("text/csv"), CounterImportResult.class);
+        assertThat(response.getBody().imported()).isEqualTo(2);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.valueOf("text/csv")));
+        String csv = restTemplate.exchange(baseUrl + "/export", HttpMethod.GET, new HttpEntity<>(headers), String.class).getBody();
+        assertThat(csv).startsWith("name,count\n").contains("\ncsvA,3\n", "\n\"csv,\"\"B\"\"\",4\n");
+
+        restTemplate.postForEntity(baseUrl, new Counter("csvA", 100), Counter.class);
+        post(csv, MediaType.valueOf("text/csv"), CounterImportResult.class);
+        assertThat(restTemplate.getForObject(baseUrl + "/csvA", Counter.class).getCount()).isEqualTo(3);
+    }
+
+    // Names with line breaks are exported as quoted fields spanning lines and read back as they were
+    @Test
+    public void testCsvNamesWithLineBreaks() {
+        restTemplate.postForEntity(baseUrl, new Counter("csv\nC", 5), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("csv\r\nD", 6), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("csv\rE", 7), Counter.class);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.valueOf("text/csv")));
+        String csv = restTemplate.exchange(baseUrl + "/export", HttpMethod.GET, new HttpEntity<>(headers), String.class).getBody();
+        assertThat(csv).contains("\n\"csv\nC\",5\n");
+
+        restTemplate.postForObject(baseUrl + "/increments", Map.of("csv\nC", 1, "csv\r\nD", 1, "csv\rE", 1), String.class);
+        ResponseEntity<CounterImportResult> imported = post(csv + "csvF,8\n", MediaType.valueOf("text/csv"), CounterImportResult.class);
+        assertThat(imported.getStatusCode()).isEqualTo(HttpStatus.OK);
+        CounterLookupResult lookup = restTemplate.postForObject(baseUrl + "/lookup",
+                List.of("csv\nC", "csv\r\nD", "csv\rE", "csvF"), CounterLookupResult.class);
+        assertThat(lookup.counters()).containsExactlyInAnyOrder(new Counter("csv\nC", 5), new Counter("csv\r\nD", 6),
+                new Counter("csv\rE", 7), new Counter("csvF", 8));
+
+        ResponseEntity<String> malformed = post("csvG,1\n\"csv\nH\",2\ncsvI,x\n", MediaType.valueOf("text/csv"), String.class);
+        assertThat(malformed.getBody()).startsWith("Line 4:");
+    }
+
+    // The line of a malformed record is reported; earlier batches stay imported
+    @Test
+    public void testMalformedLine() {
+        String body = IntStream.range(0, 1000).mapToObj(i -> "bad" + i + "," + i).collect(Collectors.joining("\n"))
+                + "\nbadX,notanumber\n";
+        ResponseEntity<String> response = post(body, MediaType.valueOf("text/csv"), String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).startsWith("Line 1001:");
+        assertThat(restTemplate.getForObject(baseUrl + "/bad999", Counter.class).getCount()).isEqualTo(999);
+
+        ResponseEntity<String> json = post("{\"name\":\"j1\",\"count\":1}\n{\"name\":", MediaType.APPLICATION_NDJSON, String.class);
+        assertThat(json.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(json.getBody()).startsWith("Line 2:");
+    }
+
+    private <T> ResponseEntity<T> post(String body, MediaType contentType, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        return restTemplate.postForEntity(baseUrl + "/import", new HttpEntity<>(body, headers), responseType);
+    }
+}
@@ -0,0 +1,75 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterLookupResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterLookupE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // Test for GET /counters?names=
+    @Test
+    public void testGetCountersByNames() {
+        restTemplate.postForEntity(baseUrl, new Counter("lookupA", 1), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("lookupB", 2), Counter.class);
+
+        ResponseEntity<CounterLookupResult> response = restTemplate.getForEntity(
+                baseUrl + "?names=lookupA,lookupB,nonexistent", CounterLookupResult.class);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().counters())
+                .containsExactlyInAnyOrder(new Counter("lookupA", 1), new Counter("lookupB", 2));
+        assertThat(response.getBody().missing()).containsExactly("nonexistent");
+    }
+
+    // Test for POST /counters/lookup with more names than fit into one IN chunk
+    @Test
+    public void testLookupManyNames() {
+        Map<String, Integer> deltas = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            names.add("bulk" + i);
+            if (i % 2 == 0) {
+                deltas.put("bulk" + i, i + 1);
+            }
+        }
+        restTemplate.postForEntity(baseUrl + "/increments?create=true", deltas, String.class);
+
+        CounterLookupResult result = restTemplate.postForObject(baseUrl + "/lookup", names, CounterLookupResult.class);
+
+        assertThat(result.counters()).hasSize(1250);
+        assertThat(result.counters()).contains(new Counter("bulk2498", 2499));
+        assertThat(result.missing()).hasSize(1250).contains("bulk1", "bulk2499");
+    }
+}
@@ -0,0 +1,70 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterMetricsE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port;
+    }
+
+    // Test for GET /actuator/hotcounters
+    @Test
+    public void testHotCounters() {
+        restTemplate.postForEntity(baseUrl + "/counters", new Counter("metricsHot", 1), Counter.class);
+        restTemplate.postForEntity(baseUrl + "/counters", new Counter("metricsCold", 1), Counter.class);
+        for (int i = 0; i < 20; i++) {
+            restTemplate.put(baseUrl + "/counters/metricsHot", null);
+        }
+        restTemplate.put(baseUrl + "/counters/metricsCold", null);
+
+        String body = restTemplate.getForObject(baseUrl + "/actuator/hotcounters", String.class);
+        List<String> names = JsonPath.read(body, "$.increments[*].name");
+        assertThat(names).startsWith("metricsHot");
+        assertThat(JsonPath.<Integer>read(body, "$.increments[0].estimate")).isGreaterThanOrEqualTo(20);
+    }
+
+    // Test for the counter.not.found and counter.db.round.trips meters
+    @Test
+    public void testNotFoundAndRoundTripMeters() {
+        double notFound = meter("counter.not.found");
+        double roundTrips = meter("counter.db.round.trips");
+
+        restTemplate.getForEntity(baseUrl + "/counters/metricsMissing", String.class);
+        restTemplate.put(baseUrl + "/counters/metricsMissing", null);
+
+        assertThat(meter("counter.not.found")).isEqualTo(notFound + 2);
+        assertThat(meter("counter.db.round.trips")).isGreaterThanOrEqualTo(roundTrips + 2);
+    }
+
+    private double meter(String name) {
+        String body = restTemplate.getForObject(baseUrl + "/actuator/metrics/" + name, String.class);
+        return JsonPath.<Number>read(body, "$.measurements[0].value").doubleValue();
+    }
+}
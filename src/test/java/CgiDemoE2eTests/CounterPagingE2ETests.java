@@ -0,0 +1,105 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterPagingE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+        for (int i = 0; i < 5; i++) {
+            restTemplate.postForEntity(baseUrl, new Counter("paged" + i, 1000 + i), Counter.class);
+        }
+    }
+
+    // Test for GET /counters?page=&size=&sort=
+    @Test
+    public void testGetCountersPage() {
+        ResponseEntity<String> response = restTemplate.getForEntity(baseUrl + "?page=1&size=2&sort=count,desc", String.class);
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+
+        DocumentContext jsonContext = JsonPath.parse(response.getBody());
+        List<String> counterNames = jsonContext.read("$._embedded.counterList[*].name");
+        assertThat(counterNames).containsExactly("paged2", "paged1");
+        assertThat(jsonContext.read("$.page.number", Integer.class)).isEqualTo(1);
+        assertThat(jsonContext.read("$._links.next.href", String.class)).contains("page=2");
+        assertThat(jsonContext.read("$._links.prev.href", String.class)).contains("page=0");
+        List<String> selfLinks = jsonContext.read("$._embedded.counterList[*]._links.self.href");
+        assertThat(selfLinks).containsExactly(baseUrl + "/paged2", baseUrl + "/paged1");
+    }
+
+    // Test for GET /counters/export
+    @Test
+    public void testExportCounters() {
+        ResponseEntity<String> response = restTemplate.getForEntity(baseUrl + "/export", String.class);
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+        List<String> lines = response.getBody().lines().toList();
+        assertThat(lines).contains("{\"name\":\"paged0\",\"count\":1000}", "{\"name\":\"paged4\",\"count\":1004}");
+        assertThat(lines).allSatisfy(line -> assertThat(JsonPath.parse(line).read("$.name", String.class)).isNotBlank());
+    }
+
+    // Test for GET /counters/range, following the keyset next links
+    @Test
+    public void testPrefixRangePages() {
+        restTemplate.postForEntity(baseUrl, new Counter("pagedX", 1), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("pagex", 1), Counter.class);
+
+        DocumentContext first = JsonPath.parse(restTemplate.getForObject(baseUrl + "/range?prefix=paged&limit=4", String.class));
+        assertThat(first.<List<String>>read("$._embedded.counterList[*].name"))
+                .containsExactly("paged0", "paged1", "paged2", "paged3");
+        String next = first.read("$._links.next.href", String.class);
+        assertThat(next).contains("after=paged3");
+
+        DocumentContext second = JsonPath.parse(restTemplate.getForObject(next, String.class));
+        assertThat(second.<List<String>>read("$._embedded.counterList[*].name")).containsExactly("paged4", "pagedX");
+        assertThat(second.<Map<String, Object>>read("$._links")).doesNotContainKey("next");
+
+        DocumentContext between = JsonPath.parse(restTemplate.getForObject(baseUrl + "/range?from=paged1&to=paged3", String.class));
+        assertThat(between.<List<String>>read("$._embedded.counterList[*].name")).containsExactly("paged1", "paged2");
+
+        ResponseEntity<String> both = restTemplate.getForEntity(baseUrl + "/range?prefix=paged&from=a", String.class);
+        assertThat(both.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    // Test for GET /counters/aggregate
+    @Test
+    public void testAggregatePrefix() {
+        DocumentContext aggregate = JsonPath.parse(restTemplate.getForObject(baseUrl + "/aggregate?prefix=paged", String.class));
+        assertThat(aggregate.read("$.counters", Long.class)).isGreaterThanOrEqualTo(5);
+        DocumentContext digits = JsonPath.parse(restTemplate.getForObject(baseUrl + "/aggregate?from=paged0&to=paged5", String.class));
+        assertThat(digits.read("$.counters", Long.class)).isEqualTo(5);
+        assertThat(digits.read("$.sum", Long.class)).isEqualTo(5010);
+    }
+}
@@ -0,0 +1,133 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterRates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@Import(CounterRatesE2ETests.Config.class)
+@DirtiesContext
+public class CounterRatesE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SettableClock clock;
+
+    @Autowired
+    private CounterRates rates;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // Increments are counted per window and survive being rolled up into hour rows
+    @Test
+    public void testRatesOverWindows() {
+        restTemplate.postForEntity(baseUrl, new Counter("rateA", 1), Counter.class);
+        for (int i = 0; i < 3; i++) {
+            restTemplate.put(baseUrl + "/rateA", null);
+        }
+        clock.advance(Duration.ofSeconds(30));
+        restTemplate.postForEntity(baseUrl + "/increments", Map.of("rateA", 4), String.class);
+
+        assertThat(rate("rateA", "10s")).containsEntry("count", 4).containsEntry("windowSeconds", 10);
+        assertThat(rate("rateA", "1m")).containsEntry("count", 7);
+        assertThat(rate("rateA", "2h")).containsEntry("count", 7);
+
+        clock.advance(Duration.ofMinutes(2));
+        rates.persist();
+        Long persisted = jdbcTemplate.queryForObject(
+                "select sum(count) from counter_rate_bucket where name = 'rateA'", Long.class);
+        assertThat(persisted).isEqualTo(7);
+        assertThat(rate("rateA", "1m")).containsEntry("count", 0);
+        assertThat(rate("rateA", "2h")).containsEntry("count", 7);
+
+        restTemplate.put(baseUrl + "/rateA", null);
+        assertThat(rate("rateA", "2h")).containsEntry("count", 8);
+        assertThat(rate("rateA", "1h")).containsEntry("count", 8);
+    }
+
+    @Test
+    public void testRateOfUnknownCounterOrWindow() {
+        restTemplate.postForEntity(baseUrl, new Counter("rateB", 1), Counter.class);
+        assertThat(rate("rateB", "1m")).containsEntry("count", 0);
+
+        ResponseEntity<String> missing = restTemplate.getForEntity(baseUrl + "/missingRate/rate", String.class);
+        assertThat(missing.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        ResponseEntity<String> tooLong = restTemplate.getForEntity(baseUrl + "/rateB/rate?window=30d", String.class);
+        assertThat(tooLong.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> rate(String name, String window) {
+        return restTemplate.getForObject(baseUrl + "/" + name + "/rate?window=" + window, Map.class);
+    }
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        SettableClock clock() {
+            return new SettableClock();
+        }
+    }
+
+    static class SettableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2027-01-15T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
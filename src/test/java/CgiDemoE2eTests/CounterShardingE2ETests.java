@@ -0,0 +1,182 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterBatchResult;
+import CgiDemo.CounterShards;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@TestPropertySource(properties = {"counter.shards.auto-threshold=50", "counter.shards.auto-count=4"})
+@DirtiesContext
+public class CounterShardingE2ETests {
+
+    private static final int REQUESTS = 500;
+    private static final int CLIENTS = 32;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CounterShards shards;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // A sharded counter keeps its JSON shape and reads as the sum of its shards
+    @Test
+    public void testShardedCounterSumsShards() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("shardedA", 10), Counter.class);
+        restTemplate.put(baseUrl + "/shardedA/shards?count=8", null);
+
+        assertThat(fire(HttpMethod.PUT, baseUrl + "/shardedA", REQUESTS)).containsOnly(HttpStatus.OK);
+
+        String body = restTemplate.getForObject(baseUrl + "/shardedA", String.class);
+        assertThat(JsonPath.<Map<String, Object>>read(body, "$")).containsOnlyKeys("name", "count", "_links");
+        assertThat(JsonPath.<Integer>read(body, "$.count")).isEqualTo(REQUESTS + 10);
+
+        String all = restTemplate.getForObject(baseUrl, String.class);
+        assertThat(JsonPath.<List<Integer>>read(all, "$._embedded.counterList[?(@.name == 'shardedA')].count"))
+                .containsExactly(REQUESTS + 10);
+
+        // Merging the shards back keeps the count
+        restTemplate.put(baseUrl + "/shardedA/shards?count=1", null);
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedA", Counter.class).getCount()).isEqualTo(REQUESTS + 10);
+    }
+
+    // The leaderboard and aggregates count a sharded counter as its row plus its shards
+    @Test
+    public void testTopIncludesShards() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("shardedTop", 5_000_000), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("plainTop", 5_000_005), Counter.class);
+        restTemplate.put(baseUrl + "/shardedTop/shards?count=4", null);
+        assertThat(fire(HttpMethod.PUT, baseUrl + "/shardedTop", 10)).containsOnly(HttpStatus.OK);
+
+        String body = restTemplate.getForObject(baseUrl + "/top?k=2", String.class);
+        assertThat(JsonPath.<List<String>>read(body, "$._embedded.counterList[*].name"))
+                .containsExactly("shardedTop", "plainTop");
+        assertThat(JsonPath.<Integer>read(body, "$._embedded.counterList[0].count")).isEqualTo(5_000_010);
+
+        // Prefix sums add the shard deltas too
+        String aggregate = restTemplate.getForObject(baseUrl + "/aggregate?prefix=shardedTop", String.class);
+        assertThat(JsonPath.<Integer>read(aggregate, "$.sum")).isEqualTo(5_000_010);
+    }
+
+    // DELETE decrements the combined count and removes the counter, shards included, at one
+    @Test
+    public void testDeleteShardedCounter() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("shardedB", 1), Counter.class);
+        restTemplate.put(baseUrl + "/shardedB/shards?count=4", null);
+        assertThat(fire(HttpMethod.PUT, baseUrl + "/shardedB", 20)).containsOnly(HttpStatus.OK);
+
+        assertThat(fire(HttpMethod.DELETE, baseUrl + "/shardedB", 20)).containsOnly(HttpStatus.OK);
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedB", Counter.class).getCount()).isEqualTo(1);
+
+        restTemplate.delete(baseUrl + "/shardedB");
+        assertThat(restTemplate.getForEntity(baseUrl + "/shardedB", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+
+        // A new counter of the same name starts from its own count, not from leftover shards
+        restTemplate.postForEntity(baseUrl, new Counter("shardedB", 3), Counter.class);
+        restTemplate.put(baseUrl + "/shardedB/shards?count=4", null);
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedB", Counter.class).getCount()).isEqualTo(3);
+    }
+
+    // Batches apply to the combined count of sharded counters
+    @Test
+    public void testBatchOnShardedCounter() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("shardedC", 5), Counter.class);
+        restTemplate.put(baseUrl + "/shardedC/shards?count=4", null);
+        assertThat(fire(HttpMethod.PUT, baseUrl + "/shardedC", 10)).containsOnly(HttpStatus.OK);
+
+        CounterBatchResult result = restTemplate.postForObject(baseUrl + "/increments",
+                Map.of("shardedC", 5), CounterBatchResult.class);
+        assertThat(result.counts()).containsEntry("shardedC", 20);
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedC", Counter.class).getCount()).isEqualTo(20);
+    }
+
+    // A batch that fails leaves the shards it folded untouched
+    @Test
+    public void testFailedBatchKeepsShards() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("shardedD", 5), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("shardedFull", Integer.MAX_VALUE), Counter.class);
+        restTemplate.put(baseUrl + "/shardedD/shards?count=4", null);
+        assertThat(fire(HttpMethod.PUT, baseUrl + "/shardedD", 10)).containsOnly(HttpStatus.OK);
+
+        ResponseEntity<String> failed = restTemplate.postForEntity(baseUrl + "/increments",
+                Map.of("shardedD", 1, "shardedFull", 1), String.class);
+        assertThat(failed.getStatusCode().is2xxSuccessful()).isFalse();
+
+        assertThat(jdbcTemplate.queryForObject("select sum(delta) from counter_shard where name = 'shardedD'",
+                Integer.class)).isEqualTo(10);
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedD", Counter.class).getCount()).isEqualTo(15);
+    }
+
+    // A counter the hot-counter tracker ranks above the threshold is sharded without losing increments
+    @Test
+    public void testHotCounterIsShardedAutomatically() throws Exception {
+        restTemplate.postForEntity(baseUrl, new Counter("shardedHot", 1), Counter.class);
+
+        assertThat(fire(HttpMethod.PUT, baseUrl + "/shardedHot", REQUESTS)).containsOnly(HttpStatus.OK);
+        assertThat(shards.isSharded("shardedHot")).isTrue();
+
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedHot", Counter.class).getCount())
+                .isEqualTo(REQUESTS + 1);
+        ResponseEntity<String> reshard = restTemplate.exchange(baseUrl + "/shardedHot/shards?count=1",
+                HttpMethod.PUT, null, String.class);
+        assertThat(reshard.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(shards.isSharded("shardedHot")).isFalse();
+        assertThat(restTemplate.getForObject(baseUrl + "/shardedHot", Counter.class).getCount())
+                .isEqualTo(REQUESTS + 1);
+    }
+
+    private List<HttpStatus> fire(HttpMethod method, String url, int requests) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(clients.submit(() -> restTemplate.exchange(url, method, null, String.class)));
+            }
+            List<HttpStatus> statuses = new ArrayList<>();
+            for (Future<ResponseEntity<String>> response : responses) {
+                statuses.add(HttpStatus.valueOf(response.get().getStatusCode().value()));
+            }
+            return statuses;
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
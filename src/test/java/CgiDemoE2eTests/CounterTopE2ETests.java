@@ -0,0 +1,74 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Its counters would outrank those of the CRUD suite, so it gets a context of its own
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterTopE2ETests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // Largest first, ties by name; increments move a counter up
+    @Test
+    public void testTopCounters() {
+        restTemplate.postForEntity(baseUrl, new Counter("topA", 1_000_002), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("topB", 1_000_000), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("topC", 1_000_000), Counter.class);
+        restTemplate.put(baseUrl + "/topC", null);
+        restTemplate.put(baseUrl + "/topC", null);
+
+        String body = restTemplate.getForObject(baseUrl + "/top?k=3", String.class);
+        assertThat(JsonPath.<List<String>>read(body, "$._embedded.counterList[*].name"))
+                .containsExactly("topA", "topC", "topB");
+        assertThat(JsonPath.<List<Integer>>read(body, "$._embedded.counterList[*].count"))
+                .containsExactly(1_000_002, 1_000_002, 1_000_000);
+
+        restTemplate.delete(baseUrl + "/topA");
+        body = restTemplate.getForObject(baseUrl + "/top?k=2", String.class);
+        assertThat(JsonPath.<List<String>>read(body, "$._embedded.counterList[*].name"))
+                .containsExactly("topC", "topA");
+
+        ResponseEntity<String> invalid = restTemplate.getForEntity(baseUrl + "/top?k=0", String.class);
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    // Links carry the name as one encoded path segment and k as a query parameter
+    @Test
+    public void testTopLinksAreEncoded() {
+        restTemplate.postForEntity(baseUrl, new Counter("top a/b?c#d", 1), Counter.class);
+
+        String body = restTemplate.getForObject(baseUrl + "/top?k=1000", String.class);
+        assertThat(JsonPath.<List<String>>read(body, "$._embedded.counterList[?(@.name == 'top a/b?c#d')]._links.self.href"))
+                .containsExactly(baseUrl + "/top%20a%2Fb%3Fc%23d");
+        assertThat(JsonPath.<String>read(body, "$._links.self.href")).isEqualTo(baseUrl + "/top?k=1000");
+    }
+}
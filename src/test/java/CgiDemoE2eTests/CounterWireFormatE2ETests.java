@@ -0,0 +1,175 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import CgiDemo.CounterLookupResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+public class CounterWireFormatE2ETests {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    private final ObjectMapper cbor = new CBORMapper();
+    private final ObjectMapper smile = new SmileMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() {
+        baseUrl = "http://localhost:" + port + "/counters";
+    }
+
+    // A counter posted as CBOR comes back as CBOR without links
+    @Test
+    public void testSingleCounterAsCbor() throws IOException {
+        ResponseEntity<byte[]> created = exchange(HttpMethod.POST, baseUrl,
+                cbor.writeValueAsBytes(new Counter("wireA", 5)), MediaType.APPLICATION_CBOR);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(cbor.readValue(created.getBody(), Counter.class)).isEqualTo(new Counter("wireA", 5));
+
+        ResponseEntity<byte[]> response = exchange(HttpMethod.GET, baseUrl + "/wireA", null, MediaType.APPLICATION_CBOR);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+        JsonNode counter = cbor.readTree(response.getBody());
+        assertThat(counter.properties()).extracting(entry -> entry.getKey()).containsExactlyInAnyOrder("name", "count");
+        assertThat(counter.get("count").asInt()).isEqualTo(5);
+    }
+
+    // Collections, pages and multi-gets in Smile are bare counters
+    @Test
+    public void testCollectionsAsSmile() throws IOException {
+        restTemplate.postForEntity(baseUrl, new Counter("wireB", 1), Counter.class);
+        restTemplate.postForEntity(baseUrl, new Counter("wireC", 2), Counter.class);
+
+        JsonNode all = smile.readTree(exchange(HttpMethod.GET, baseUrl, null, SMILE).getBody());
+        assertThat(all.isArray()).isTrue();
+        assertThat(all.findValuesAsText("name")).contains("wireB", "wireC");
+        assertThat(all.findValue("_links")).isNull();
+
+        JsonNode page = smile.readTree(exchange(HttpMethod.GET, baseUrl + "?page=0&size=1", null, SMILE).getBody());
+        assertThat(page.get("counters")).hasSize(1);
+        assertThat(page.get("page").get("size").asInt()).isEqualTo(1);
+
+        CounterLookupResult lookup = smile.readValue(
+                exchange(HttpMethod.GET, baseUrl + "?names=wireB,wireX", null, SMILE).getBody(), CounterLookupResult.class);
+        assertThat(lookup.counters()).containsExactly(new Counter("wireB", 1));
+        assertThat(lookup.missing()).containsExactly("wireX");
+    }
+
+    // JSON keeps its links unless they are turned off
+    @Test
+    public void testPlainJson() throws IOException {
+        restTemplate.postForEntity(baseUrl, new Counter("wireD", 3), Counter.class);
+
+        assertThat(restTemplate.getForObject(baseUrl + "/wireD", String.class)).contains("_links");
+        assertThat(restTemplate.getForObject(baseUrl + "/wireD?links=false", String.class))
+                .isEqualTo("{\"name\":\"wireD\",\"count\":3}");
+
+        JsonNode range = new ObjectMapper().readTree(
+                restTemplate.getForObject(baseUrl + "/range?prefix=wireD&links=false", String.class));
+        assertThat(range.toString()).isEqualTo("[{\"name\":\"wireD\",\"count\":3}]");
+    }
+
+    // The streaming export is a sequence of CBOR values
+    @Test
+    public void testExportAsCbor() throws IOException {
+        restTemplate.postForEntity(baseUrl, new Counter("wireE", 7), Counter.class);
+
+        byte[] body = exchange(HttpMethod.GET, baseUrl + "/export", null, MediaType.APPLICATION_CBOR).getBody();
+        List<Counter> counters = cbor.readerFor(Counter.class).<Counter>readValues(body).readAll();
+        assertThat(counters).contains(new Counter("wireE", 7));
+    }
+
+    // A tag sent with JSON does not confirm the CBOR representation of the same version
+    @Test
+    public void testETagPerRepresentation() {
+        restTemplate.postForEntity(baseUrl, new Counter("wireF", 2), Counter.class);
+
+        ResponseEntity<byte[]> json = conditional(baseUrl + "/wireF", MediaTypes.HAL_JSON, null);
+        String jsonTag = json.getHeaders().getETag();
+        assertThat(json.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+
+        ResponseEntity<byte[]> asCbor = conditional(baseUrl + "/wireF", MediaType.APPLICATION_CBOR, jsonTag);
+        assertThat(asCbor.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(asCbor.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+        String cborTag = asCbor.getHeaders().getETag();
+        assertThat(cborTag).isNotEqualTo(jsonTag);
+
+        ResponseEntity<byte[]> unchanged = conditional(baseUrl + "/wireF", MediaType.APPLICATION_CBOR, cborTag);
+        assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(unchanged.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+        assertThat(conditional(baseUrl + "/wireF", MediaTypes.HAL_JSON, jsonTag).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(conditional(baseUrl + "/wireF?links=false", MediaType.APPLICATION_JSON, jsonTag).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    // Whatever Accept negotiates, a repeat of the request confirms the tag it was sent
+    @Test
+    public void testETagFollowsNegotiation() {
+        restTemplate.postForEntity(baseUrl, new Counter("wireG", 3), Counter.class);
+
+        for (String accept : List.of("application/cbor;q=0.5, application/x-jackson-smile", "*/*", "application/*",
+                "application/json;q=0.1, application/cbor;q=0.2", "text/html, application/xhtml+xml, */*;q=0.8")) {
+            for (String url : List.of(baseUrl + "/wireG", baseUrl)) {
+                ResponseEntity<byte[]> sent = conditional(url, accept, null);
+                assertThat(sent.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(conditional(url, accept, sent.getHeaders().getETag()).getStatusCode())
+                        .as("%s with Accept: %s", url, accept).isEqualTo(HttpStatus.NOT_MODIFIED);
+            }
+        }
+    }
+
+    private ResponseEntity<byte[]> conditional(String url, MediaType type, String etag) {
+        return conditional(url, type.toString(), etag);
+    }
+
+    private ResponseEntity<byte[]> conditional(String url, String accept, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, accept);
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+    }
+
+    private ResponseEntity<byte[]> exchange(HttpMethod method, String url, byte[] body, MediaType type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(type));
+        if (body != null) {
+            headers.setContentType(type);
+        }
+        return restTemplate.exchange(url, method, new HttpEntity<>(body, headers), byte[].class);
+    }
+}
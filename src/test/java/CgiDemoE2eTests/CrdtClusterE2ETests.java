@@ -0,0 +1,168 @@
+package CgiDemoE2eTests;
+
+import CgiDemo.CgiDemoApplication;
+import CgiDemo.Counter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+// Three crdt nodes on loopback, each with its own in-memory state, replicating to each other
+public class CrdtClusterE2ETests {
+
+    private static final String SECRET = "cluster-secret";
+
+    private final RestTemplate restTemplate = new RestTemplateBuilder().build();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    private int[] ports;
+
+    @AfterEach
+    public void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    // Writes on every node converge to the same count
+    @Test
+    public void testConcurrentWritesConverge() throws Exception {
+        startCluster();
+        restTemplate.postForObject(url(0, "/counters"), new Counter("shared", 1), Counter.class);
+        awaitCount("shared", 1);
+
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        for (int i = 0; i < 90; i++) {
+            int node = i % 3;
+            clients.execute(() -> restTemplate.put(url(node, "/counters/shared"), null));
+        }
+        for (int i = 0; i < 5; i++) {
+            clients.execute(() -> restTemplate.delete(url(1, "/counters/shared")));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        awaitCount("shared", 86);
+    }
+
+    // A node that was down catches up when it comes back, and its new writes reach the others
+    @Test
+    public void testNodeCatchesUpAfterPartition() throws Exception {
+        startCluster();
+        restTemplate.postForObject(url(0, "/counters"), new Counter("healed", 10), Counter.class);
+        awaitCount("healed", 10);
+        restTemplate.put(url(2, "/counters/healed"), null);
+        awaitCount("healed", 11);
+
+        nodes.get(2).close();
+        for (int i = 0; i < 5; i++) {
+            restTemplate.put(url(0, "/counters/healed"), null);
+            restTemplate.put(url(1, "/counters/healed"), null);
+        }
+        restTemplate.postForObject(url(1, "/counters"), new Counter("created", 3), Counter.class);
+        awaitCount(List.of(0, 1), "healed", 21);
+
+        nodes.set(2, start(2));
+        awaitCount("healed", 21);
+        awaitCount("created", 3);
+
+        restTemplate.put(url(2, "/counters/healed"), null);
+        awaitCount("healed", 22);
+    }
+
+    // The node-to-node endpoints only accept requests carrying the shared secret
+    @Test
+    public void testSyncRequiresSecret() throws Exception {
+        startCluster();
+        String state = "{\"node\":\"outsider\",\"counters\":{}}";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        assertThat(status(url(0, "/cluster/counters"), new HttpEntity<>(state, headers))).isEqualTo(HttpStatus.FORBIDDEN);
+        headers.setBearerAuth("wrong");
+        assertThat(status(url(0, "/cluster/counters"), new HttpEntity<>(state, headers))).isEqualTo(HttpStatus.FORBIDDEN);
+        headers.setBearerAuth(SECRET);
+        assertThat(status(url(0, "/cluster/counters"), new HttpEntity<>(state, headers))).isEqualTo(HttpStatus.OK);
+    }
+
+    private HttpStatusCode status(String url, HttpEntity<String> request) {
+        try {
+            return restTemplate.postForEntity(url, request, Void.class).getStatusCode();
+        } catch (HttpClientErrorException ex) {
+            return ex.getStatusCode();
+        }
+    }
+
+    private void startCluster() throws IOException {
+        ports = new int[3];
+        for (int i = 0; i < ports.length; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+        }
+        for (int i = 0; i < ports.length; i++) {
+            nodes.add(start(i));
+        }
+    }
+
+    private ConfigurableApplicationContext start(int node) {
+        String peers = IntStream.range(0, ports.length).filter(i -> i != node)
+                .mapToObj(i -> "http://localhost:" + ports[i]).collect(Collectors.joining(","));
+        return new SpringApplicationBuilder(CgiDemoApplication.class).run(
+                "--server.port=" + ports[node],
+                "--counter.engine=crdt",
+                "--counter.crdt.node-id=node" + node,
+                "--counter.crdt.peers=" + peers,
+                "--counter.crdt.sync-interval=100ms",
+                "--counter.crdt.secret=" + SECRET,
+                "--spring.jmx.enabled=false");
+    }
+
+    private void awaitCount(String name, int count) throws InterruptedException {
+        awaitCount(List.of(0, 1, 2), name, count);
+    }
+
+    private void awaitCount(List<Integer> on, String name, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        List<Integer> counts;
+        do {
+            counts = on.stream().map(node -> count(node, name)).toList();
+            if (counts.stream().allMatch(found -> found == count)) {
+                return;
+            }
+            Thread.sleep(100);
+        } while (System.nanoTime() < deadline);
+        fail("Counts of " + name + " on nodes " + on + " did not converge to " + count + ": " + counts);
+    }
+
+    private int count(int node, String name) {
+        try {
+            return restTemplate.getForObject(url(node, "/counters/" + name), Counter.class).getCount();
+        } catch (HttpClientErrorException ex) {
+            assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+            return 0;
+        }
+    }
+
+    private String url(int node, String path) {
+        return "http://localhost:" + ports[node] + path;
+    }
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Runs the full CRUD suite against a single crdt node without peers
+@TestPropertySource(properties = "counter.engine=crdt")
+public class CrdtCounterE2ETests extends CounterE2ETests {
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Ranks with a bounded heap over the counters of a single crdt node
+@TestPropertySource(properties = "counter.engine=crdt")
+public class CrdtCounterTopE2ETests extends CounterTopE2ETests {
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Runs the full CRUD suite against the memory-mapped engine
+@TestPropertySource(properties = "counter.engine=mapped")
+public class MappedCounterE2ETests extends CounterE2ETests {
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Ranks with a bounded heap over the slots of the memory-mapped engine
+@TestPropertySource(properties = "counter.engine=mapped")
+public class MappedCounterTopE2ETests extends CounterTopE2ETests {
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.ActiveProfiles;
+
+// Runs the full CRUD suite against the WebFlux + R2DBC stack
+@ActiveProfiles("reactive")
+public class ReactiveCounterE2ETests extends CounterE2ETests {
+}
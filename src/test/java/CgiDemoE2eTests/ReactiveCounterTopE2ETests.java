@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.ActiveProfiles;
+
+// Ranks through the WebFlux + R2DBC stack
+@ActiveProfiles("reactive")
+public class ReactiveCounterTopE2ETests extends CounterTopE2ETests {
+}
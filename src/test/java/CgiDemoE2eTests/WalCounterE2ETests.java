@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Runs the full CRUD suite against the write-ahead log engine
+@TestPropertySource(properties = "counter.engine=wal")
+public class WalCounterE2ETests extends CounterE2ETests {
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Ranks from the ordered set the write-ahead log engine keeps next to its counters
+@TestPropertySource(properties = "counter.engine=wal")
+public class WalCounterTopE2ETests extends CounterTopE2ETests {
+}
@@ -0,0 +1,7 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "counter.engine=write-behind")
+public class WriteBehindCounterBatchE2ETests extends CounterBatchE2ETests {
+}
@@ -0,0 +1,8 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Runs the full CRUD suite against the write-behind engine
+@TestPropertySource(properties = "counter.engine=write-behind")
+public class WriteBehindCounterE2ETests extends CounterE2ETests {
+}
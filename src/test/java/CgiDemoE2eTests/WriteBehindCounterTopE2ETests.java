@@ -0,0 +1,11 @@
+package CgiDemoE2eTests;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Increments stay pending for the whole test, so the ranking has to merge them into the index
+@TestPropertySource(properties = {
+        "counter.engine=write-behind",
+        "counter.write-behind.flush-interval=1h"
+})
+public class WriteBehindCounterTopE2ETests extends CounterTopE2ETests {
+}
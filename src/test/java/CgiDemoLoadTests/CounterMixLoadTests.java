@@ -0,0 +1,150 @@
+package CgiDemoLoadTests;
+
+import CgiDemo.CgiDemoApplication;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Capacity check for a configurable mix of requests on /counters, reporting throughput and latency
+ * percentiles per request type. Only runs with -Dloadtest=true, e.g.
+ * mvn test -Dloadtest=true -Dtest=CounterMixLoadTests -Dloadtest.mix=get:50,put:40,delete:5,post:5
+ * Any application property can be overridden the same way, e.g. -Dcounter.engine=write-behind
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@DirtiesContext
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class CounterMixLoadTests {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 200);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.seconds", 10));
+    private static final String MIX = System.getProperty("loadtest.mix", "get:60,put:25,delete:10,post:5");
+    private static final int HOT_COUNTERS = Integer.getInteger("loadtest.counters", 64);
+
+    // High enough that a DELETE during the run only ever decrements a hot counter
+    private static final int INITIAL_COUNT = 1_000_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${counter.engine}")
+    private String engine;
+
+    private final HttpClient setup = HttpClient.newHttpClient();
+
+    // PUT and DELETE work on a fixed set of hot counters and POST creates fresh ones, so the
+    // final state is fully determined by the requests the server acknowledged
+    @Test
+    public void testMixedLoad() throws Exception {
+        String baseUrl = "http://localhost:" + port + "/counters";
+        for (int i = 0; i < HOT_COUNTERS; i++) {
+            assertThat(post(baseUrl, "mix" + i, INITIAL_COUNT)).isEqualTo(200);
+        }
+
+        LongAdder[] expected = new LongAdder[HOT_COUNTERS];
+        for (int i = 0; i < HOT_COUNTERS; i++) {
+            expected[i] = new LongAdder();
+        }
+        AtomicLong created = new AtomicLong();
+        Queue<String> acknowledgedCreates = new ConcurrentLinkedQueue<>();
+
+        List<LoadDriver.Operation> mix = new ArrayList<>();
+        for (String entry : MIX.split(",")) {
+            String[] parts = entry.trim().split(":");
+            String method = parts[0].toLowerCase();
+            int weight = Integer.parseInt(parts[1]);
+            if (weight == 0) {
+                continue;
+            }
+            mix.add(new LoadDriver.Operation(method, weight, switch (method) {
+                case "get" -> client -> {
+                    URI uri = URI.create(baseUrl + "/mix" + ThreadLocalRandom.current().nextInt(HOT_COUNTERS));
+                    return client.send(HttpRequest.newBuilder(uri).GET().build(),
+                            HttpResponse.BodyHandlers.discarding()).statusCode();
+                };
+                case "put", "delete" -> client -> {
+                    int counter = ThreadLocalRandom.current().nextInt(HOT_COUNTERS);
+                    URI uri = URI.create(baseUrl + "/mix" + counter);
+                    HttpRequest request = method.equals("put")
+                            ? HttpRequest.newBuilder(uri).PUT(HttpRequest.BodyPublishers.noBody()).build()
+                            : HttpRequest.newBuilder(uri).DELETE().build();
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status / 100 == 2) {
+                        expected[counter].add(method.equals("put") ? 1 : -1);
+                    }
+                    return status;
+                };
+                case "post" -> client -> {
+                    String name = "mixnew" + created.incrementAndGet();
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + name + "\",\"count\":1}"))
+                            .build();
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status / 100 == 2) {
+                        acknowledgedCreates.add(name);
+                    }
+                    return status;
+                };
+                default -> throw new IllegalArgumentException("Unknown request type in loadtest.mix: " + method);
+            }));
+        }
+
+        Map<String, LoadDriver.Result> results = LoadDriver.run(CLIENTS, DURATION, mix);
+
+        String label = engine + " engine, " + CLIENTS + " clients, " + MIX;
+        results.forEach((operation, result) -> System.out.println(result.summary(label + " | " + operation)));
+        assertThat(results.get("total").failures()).isZero();
+
+        // Lost updates: every acknowledged PUT and DELETE must be reflected in the final counts
+        long lost = 0;
+        for (int i = 0; i < HOT_COUNTERS; i++) {
+            String body = setup.send(HttpRequest.newBuilder(URI.create(baseUrl + "/mix" + i)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            long count = JsonPath.parse(body).read("$.count", Long.class);
+            lost += Math.abs(INITIAL_COUNT + expected[i].sum() - count);
+        }
+        System.out.println(label + " | lost updates: " + lost);
+        assertThat(lost).isZero();
+
+        // Lost creates: every acknowledged POST must have left its counter behind
+        if (!acknowledgedCreates.isEmpty()) {
+            String names = "[\"" + String.join("\",\"", acknowledgedCreates) + "\"]";
+            String body = setup.send(HttpRequest.newBuilder(URI.create(baseUrl + "/lookup"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(names))
+                    .build(), HttpResponse.BodyHandlers.ofString()).body();
+            List<String> missing = JsonPath.parse(body).read("$.missing");
+            assertThat(missing).isEmpty();
+        }
+    }
+
+    private int post(String url, String name, int count) throws Exception {
+        return setup.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + name + "\",\"count\":" + count + "}"))
+                .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,155 @@
+package CgiDemoLoadTests;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a fixed number of concurrent clients for a fixed time and records the latency of every request.
+ * Clients run on virtual threads so the driver is never the bottleneck.
+ */
+final class LoadDriver {
+
+    interface Request {
+        // Sends one request and returns its HTTP status
+        int send(HttpClient client) throws Exception;
+    }
+
+    // One kind of request in a mix, picked with probability weight / total weight
+    record Operation(String name, int weight, Request request) {
+    }
+
+    record Result(long successes, long failures, Duration elapsed, long[] latenciesNanos) {
+
+        double throughput() {
+            return (successes + failures) / (elapsed.toNanos() / 1e9);
+        }
+
+        Duration percentile(double percentile) {
+            if (latenciesNanos.length == 0) {
+                return Duration.ZERO;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latenciesNanos.length) - 1;
+            return Duration.ofNanos(latenciesNanos[Math.max(0, Math.min(index, latenciesNanos.length - 1))]);
+        }
+
+        String summary(String label) {
+            return String.format("%s: %d ok, %d failed, %.0f req/s, p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+                    label, successes, failures, throughput(),
+                    millis(percentile(50)), millis(percentile(99)), millis(percentile(99.9)),
+                    millis(percentile(100)));
+        }
+
+        private static double millis(Duration duration) {
+            return duration.toNanos() / 1e6;
+        }
+    }
+
+    private LoadDriver() {
+    }
+
+    static Result run(int clients, Duration duration, Request request) throws Exception {
+        return run(clients, duration, List.of(new Operation("all", 1, request))).get("all");
+    }
+
+    /**
+     * Runs a weighted mix of operations and returns one result per operation, in mix order,
+     * followed by a result named "total" over all requests.
+     */
+    static Map<String, Result> run(int clients, Duration duration, List<Operation> mix) throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        int totalWeight = mix.stream().mapToInt(Operation::weight).sum();
+        long deadline = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+
+        List<Future<Latencies[]>> results = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> {
+                    Latencies[] latencies = new Latencies[mix.size()];
+                    for (int op = 0; op < latencies.length; op++) {
+                        latencies[op] = new Latencies();
+                    }
+                    while (System.nanoTime() < deadline) {
+                        int op = pick(mix, ThreadLocalRandom.current().nextInt(totalWeight));
+                        long sent = System.nanoTime();
+                        int status = mix.get(op).request().send(httpClient);
+                        latencies[op].add(System.nanoTime() - sent, status / 100 == 2);
+                    }
+                    return latencies;
+                }));
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        Latencies[] merged = new Latencies[mix.size() + 1];
+        for (int op = 0; op < merged.length; op++) {
+            merged[op] = new Latencies();
+        }
+        for (Future<Latencies[]> result : results) {
+            Latencies[] latencies = result.get();
+            for (int op = 0; op < latencies.length; op++) {
+                merged[op].addAll(latencies[op]);
+                merged[mix.size()].addAll(latencies[op]);
+            }
+        }
+
+        Map<String, Result> byOperation = new LinkedHashMap<>();
+        for (int op = 0; op < mix.size(); op++) {
+            byOperation.put(mix.get(op).name(), merged[op].toResult(elapsed));
+        }
+        byOperation.put("total", merged[mix.size()].toResult(elapsed));
+        return byOperation;
+    }
+
+    private static int pick(List<Operation> mix, int ticket) {
+        int op = 0;
+        while (ticket >= mix.get(op).weight()) {
+            ticket -= mix.get(op++).weight();
+        }
+        return op;
+    }
+
+    // Latencies of failed requests are stored negated
+    private static final class Latencies {
+
+        private long[] nanos = new long[1024];
+        private int size;
+
+        void add(long latency, boolean success) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = success ? latency : -latency;
+        }
+
+        void addAll(Latencies other) {
+            if (size + other.size > nanos.length) {
+                nanos = Arrays.copyOf(nanos, Math.max(nanos.length * 2, size + other.size));
+            }
+            System.arraycopy(other.nanos, 0, nanos, size, other.size);
+            size += other.size;
+        }
+
+        Result toResult(Duration elapsed) {
+            long failures = 0;
+            long[] all = new long[size];
+            for (int i = 0; i < size; i++) {
+                if (nanos[i] < 0) {
+                    failures++;
+                }
+                all[i] = Math.abs(nanos[i]);
+            }
+            Arrays.sort(all);
+            return new Result(size - failures, failures, elapsed, all);
+        }
+    }
+}
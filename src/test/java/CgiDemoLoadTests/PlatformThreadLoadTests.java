@@ -0,0 +1,9 @@
+package CgiDemoLoadTests;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class PlatformThreadLoadTests extends ThreadModelLoadTests {
+}
@@ -0,0 +1,87 @@
+package CgiDemoLoadTests;
+
+import CgiDemo.CgiDemoApplication;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares request handling on platform and virtual threads with many more clients than database
+ * connections. The subclasses only run with -Dloadtest=true, e.g.
+ * mvn test -Dloadtest=true -Dtest='*ThreadLoadTests'
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = CgiDemoApplication.class)
+@TestPropertySource(properties = {
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "server.tomcat.threads.max=50",
+        "server.tomcat.max-connections=2000",
+        "server.tomcat.accept-count=2000"
+})
+@DirtiesContext
+abstract class ThreadModelLoadTests {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 400);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.seconds", 10));
+    private static final int HOT_COUNTERS = 16;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    // Mixed reads and increments on a few hot counters; every acknowledged increment must be counted
+    @Test
+    public void testMixedLoad() throws Exception {
+        String baseUrl = "http://localhost:" + port + "/counters/";
+        HttpClient setup = HttpClient.newHttpClient();
+        for (int i = 0; i < HOT_COUNTERS; i++) {
+            setup.send(HttpRequest.newBuilder(URI.create(baseUrl.substring(0, baseUrl.length() - 1)))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"load" + i + "\",\"count\":1}"))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+        }
+
+        LongAdder acknowledged = new LongAdder();
+        LoadDriver.Result result = LoadDriver.run(CLIENTS, DURATION, client -> {
+            URI uri = URI.create(baseUrl + "load" + ThreadLocalRandom.current().nextInt(HOT_COUNTERS));
+            boolean increment = ThreadLocalRandom.current().nextInt(4) == 0;
+            HttpRequest request = increment
+                    ? HttpRequest.newBuilder(uri).PUT(HttpRequest.BodyPublishers.noBody()).build()
+                    : HttpRequest.newBuilder(uri).GET().build();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (increment && status == 200) {
+                acknowledged.increment();
+            }
+            return status;
+        });
+
+        System.out.println(result.summary((virtualThreads ? "virtual" : "platform") + " threads, "
+                + CLIENTS + " clients"));
+        assertThat(result.failures()).isZero();
+
+        long counted = 0;
+        for (int i = 0; i < HOT_COUNTERS; i++) {
+            String body = setup.send(HttpRequest.newBuilder(URI.create(baseUrl + "load" + i)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            counted += JsonPath.parse(body).read("$.count", Long.class) - 1;
+        }
+        assertThat(counted).isEqualTo(acknowledged.sum());
+    }
+}
@@ -0,0 +1,81 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.Counter;
+import CgiDemo.CounterCache;
+import CgiDemo.CounterNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CounterCacheTests {
+
+    private final CounterCache cache = new CounterCache(true, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    // Concurrent misses on one name are collapsed into a single load
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        Future<?>[] lookups = new Future<?>[8];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = clients.submit(() -> cache.get("counter1", name -> {
+                loads.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of(new Counter(name, 5));
+            }));
+        }
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<?> lookup : lookups) {
+            assertThat(lookup.get()).isEqualTo(new Counter("counter1", 5));
+        }
+        clients.shutdown();
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(7);
+    }
+
+    // Missing counters are cached until invalidated
+    @Test
+    public void testNegativeLookupsAreCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(CounterNotFoundException.class, () -> cache.get("nonexistent", name -> {
+                loads.incrementAndGet();
+                return Optional.empty();
+            }));
+        }
+        assertThat(loads.get()).isEqualTo(1);
+
+        cache.invalidate("nonexistent");
+        assertThat(cache.get("nonexistent", name -> Optional.of(new Counter(name, 1))).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysLoads() {
+        CounterCache disabled = new CounterCache(false, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        disabled.get("counter1", name -> Optional.of(new Counter(name, loads.incrementAndGet())));
+        assertThat(disabled.get("counter1", name -> Optional.of(new Counter(name, loads.incrementAndGet())))
+                .getCount()).isEqualTo(2);
+    }
+}
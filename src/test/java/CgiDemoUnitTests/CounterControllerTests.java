@@ -12,17 +12,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(CounterController.class)
 @ContextConfiguration(classes = CgiDemoApplication.class)
+@Import({CounterVersions.class, CounterChanges.class})
 public class CounterControllerTests {
 
     @Autowired
@@ -34,6 +42,12 @@ public class CounterControllerTests {
     @MockBean
     private CounterModelAssembler counterModelAssembler;
 
+    @MockBean
+    private CounterMetrics counterMetrics;
+
+    @MockBean
+    private CounterIncrementQueue incrementQueue;
+
     // Test for GET /counters
     @Test
     public void testGetAllCounters() throws Exception {
@@ -52,6 +66,49 @@ public class CounterControllerTests {
                 .andExpect(jsonPath("$._embedded.counterList[1].name").value("counter2"));
     }
 
+    // Test for GET /counters?page=&size=
+    @Test
+    public void testGetCountersPage() throws Exception {
+        Counter counter3 = new Counter("counter3", 3);
+        Counter counter4 = new Counter("counter4", 4);
+
+        when(counterService.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(counter3, counter4), PageRequest.of(1, 2), 6));
+        when(counterModelAssembler.toModel(counter3)).thenReturn(EntityModel.of(counter3));
+        when(counterModelAssembler.toModel(counter4)).thenReturn(EntityModel.of(counter4));
+
+        mockMvc.perform(get("/counters").param("page", "1").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.counterList[0].name").value("counter3"))
+                .andExpect(jsonPath("$._embedded.counterList[1].name").value("counter4"))
+                .andExpect(jsonPath("$.page.totalElements").value(6))
+                .andExpect(jsonPath("$._links.next.href").exists())
+                .andExpect(jsonPath("$._links.prev.href").exists());
+
+        verify(counterService).findAll(PageRequest.of(1, 2));
+    }
+
+    // Test for GET /counters?size= and GET /counters?sort= without a page number
+    @Test
+    public void testGetCountersPageWithoutPageNumber() throws Exception {
+        Counter counter1 = new Counter("counter1", 5);
+        when(counterService.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(counter1), PageRequest.of(0, 1), 3));
+        when(counterModelAssembler.toModel(counter1)).thenReturn(EntityModel.of(counter1));
+
+        mockMvc.perform(get("/counters").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.counterList[0].name").value("counter1"))
+                .andExpect(jsonPath("$.page.totalElements").value(3));
+        verify(counterService).findAll(PageRequest.of(0, 1));
+
+        mockMvc.perform(get("/counters").param("sort", "count,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page.totalElements").value(3));
+        verify(counterService).findAll(PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "count")));
+        verify(counterService, never()).findAll();
+    }
+
     // Test for POST /counters
     @Test
     public void testCreateNewCounter() throws Exception {
@@ -66,6 +123,51 @@ public class CounterControllerTests {
                 .andExpect(jsonPath("$.name").value("counter3"));
     }
 
+    // Test for GET /counters/top
+    @Test
+    public void testTopCounters() throws Exception {
+        Counter counter1 = new Counter("counter1", 50);
+        Counter counter2 = new Counter("counter2", 20);
+
+        when(counterService.top(2)).thenReturn(List.of(counter1, counter2));
+        when(counterModelAssembler.toModel(counter1)).thenReturn(EntityModel.of(counter1));
+        when(counterModelAssembler.toModel(counter2)).thenReturn(EntityModel.of(counter2));
+
+        mockMvc.perform(get("/counters/top").param("k", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.counterList[0].name").value("counter1"))
+                .andExpect(jsonPath("$._embedded.counterList[1].name").value("counter2"));
+
+        mockMvc.perform(get("/counters/top").param("k", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test for POST /counters/increments
+    @Test
+    public void testIncreaseCounters() throws Exception {
+        when(counterService.increaseCounters(Map.of("counter1", 2, "nonexistent", 1), false))
+                .thenReturn(Map.of("counter1", 7));
+
+        mockMvc.perform(post("/counters/increments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"counter1\":2,\"nonexistent\":1}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.counts.counter1").value(7))
+                .andExpect(jsonPath("$.missing[0]").value("nonexistent"));
+    }
+
+    // Test for GET /counters?names=
+    @Test
+    public void testGetCountersByNames() throws Exception {
+        when(counterService.findAllById(anyCollection())).thenReturn(List.of(new Counter("counter1", 5)));
+
+        mockMvc.perform(get("/counters").param("names", "counter1,nonexistent"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.counters[0].name").value("counter1"))
+                .andExpect(jsonPath("$.counters[0].count").value(5))
+                .andExpect(jsonPath("$.missing[0]").value("nonexistent"));
+    }
+
     // Test for GET /counters/{name} where the counter DNE
     @Test
     public void testGetCounterByNameNotFound() throws Exception {
@@ -124,6 +226,27 @@ public class CounterControllerTests {
         assertEquals(6, counterService.findById(counterName).getCount());
     }
 
+    // Test for PUT /counters/{name} with Prefer: respond-async
+    @Test
+    public void testIncreaseCounterAsync() throws Exception {
+        mockMvc.perform(put("/counters/counter1").header("Prefer", "respond-async, wait=5"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"));
+
+        verify(incrementQueue).increment("counter1");
+        verify(counterService, never()).increaseCounter("counter1");
+    }
+
+    // Test for PUT /counters/{name} with Prefer: respond-async when the queue is full
+    @Test
+    public void testIncreaseCounterAsyncQueueFull() throws Exception {
+        doThrow(new CounterQueueFullException(Duration.ofSeconds(2))).when(incrementQueue).increment("counter1");
+
+        mockMvc.perform(put("/counters/counter1").header("Prefer", "respond-async"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
     // Test for DELETE /counters/{name} where counter DNE
     @Test
     public void testDeleteCounterNotFound() throws Exception {
@@ -143,7 +266,7 @@ public class CounterControllerTests {
         Counter counter = new Counter(counterName, 1);
 
         when(counterService.findById(counterName)).thenReturn(counter);
-        doNothing().when(counterService).deleteCounter(counterName);
+        when(counterService.deleteCounter(counterName)).thenReturn(true);
         // the counter should not exist after being decreased to 0
         doThrow(new CounterNotFoundException(counterName)).when(counterService).findById(counterName);
 
@@ -164,7 +287,7 @@ public class CounterControllerTests {
         Counter updatedCounter = new Counter(counterName, 4); // Value after decrement should be 4
 
         when(counterService.findById(counterName)).thenReturn(counter);
-        doNothing().when(counterService).deleteCounter(counterName);
+        when(counterService.deleteCounter(counterName)).thenReturn(false);
         when(counterService.findById(counterName)).thenReturn(updatedCounter);
 
         mockMvc.perform(delete("/counters/" + counterName))
@@ -174,4 +297,61 @@ public class CounterControllerTests {
         verify(counterService).deleteCounter(counterName);
         assertEquals(4, counterService.findById(counterName).getCount());
     }
+
+    // Test for PUT /counters/{name}/shards
+    @Test
+    public void testShardCounter() throws Exception {
+        mockMvc.perform(put("/counters/counter1/shards").param("count", "8"))
+                .andExpect(status().isOk());
+        verify(counterService).setShards("counter1", 8);
+
+        mockMvc.perform(put("/counters/counter1/shards").param("count", "0"))
+                .andExpect(status().isBadRequest());
+        verifyNoMoreInteractions(counterService);
+    }
+
+    // Test for GET /counters/{name} with If-None-Match
+    @Test
+    public void testGetCounterNotModified() throws Exception {
+        Counter counter = new Counter("counter1", 5);
+        when(counterService.findById("counter1")).thenReturn(counter);
+        when(counterModelAssembler.toModel(counter)).thenReturn(EntityModel.of(counter));
+
+        String etag = mockMvc.perform(get("/counters/counter1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/counters/counter1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(counterService, times(1)).findById("counter1");
+
+        // Any change through the API produces a new ETag
+        mockMvc.perform(put("/counters/counter1")).andExpect(status().isOk());
+        mockMvc.perform(get("/counters/counter1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", org.hamcrest.Matchers.not(etag)));
+    }
+
+    // Test for GET /counters with If-None-Match
+    @Test
+    public void testGetAllCountersNotModified() throws Exception {
+        when(counterService.findAll()).thenReturn(List.of());
+        when(counterService.save(any(Counter.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String etag = mockMvc.perform(get("/counters"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/counters").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        verify(counterService, times(1)).findAll();
+
+        mockMvc.perform(post("/counters").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"counter3\",\"count\":1}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/counters").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
 }
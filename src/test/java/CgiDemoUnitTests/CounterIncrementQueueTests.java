@@ -0,0 +1,98 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.CounterChanges;
+import CgiDemo.CounterIncrementQueue;
+import CgiDemo.CounterQueueFullException;
+import CgiDemo.CounterService;
+import CgiDemo.CounterThreads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CounterIncrementQueueTests {
+
+    private final CounterService service = mock(CounterService.class);
+    private final CounterChanges changes = mock(CounterChanges.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // Applied deltas per counter, recorded by the fake service; only "missing" does not exist
+    private final Map<String, Integer> applied = new HashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @SuppressWarnings("unchecked")
+    private CounterIncrementQueue open(int capacity) {
+        when(service.increaseCounters(anyMap(), eq(false))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            Map<String, Integer> deltas = invocation.getArgument(0);
+            Map<String, Integer> counts = new HashMap<>();
+            synchronized (applied) {
+                deltas.forEach((name, delta) -> {
+                    if (!name.equals("missing")) {
+                        counts.put(name, applied.merge(name, delta, Integer::sum));
+                    }
+                });
+            }
+            return counts;
+        });
+        return new CounterIncrementQueue(service, changes, new CounterThreads(false), registry,
+                1, capacity, 1000, Duration.ofMillis(10), Duration.ofSeconds(3));
+    }
+
+    // A full lane rejects instead of blocking, and everything accepted is applied on close
+    @Test
+    public void testRejectsWhenFullAndDrainsOnClose() throws Exception {
+        CounterIncrementQueue queue = open(3);
+
+        // The first increment is taken by the worker, which then blocks in the service
+        queue.increment("a");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.depth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        queue.increment("a");
+        queue.increment("b");
+        queue.increment("missing");
+        CounterQueueFullException full = assertThrows(CounterQueueFullException.class, () -> queue.increment("a"));
+        assertThat(full.getRetryAfter()).isEqualTo(Duration.ofSeconds(3));
+        assertThat(registry.get("counter.async.queue.depth").gauge().value()).isEqualTo(3);
+
+        release.countDown();
+        queue.close();
+
+        assertThat(applied).containsEntry("a", 2).containsEntry("b", 1).doesNotContainKey("missing");
+        assertThat(registry.get("counter.async.accepted").functionCounter().count()).isEqualTo(4);
+        assertThat(registry.get("counter.async.rejected").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("counter.async.dropped").functionCounter().count()).isEqualTo(1);
+        verify(changes).changed("b", 1);
+        assertThrows(CounterQueueFullException.class, () -> queue.increment("a"));
+    }
+
+    // Increments queued up behind a batch are coalesced into one call per counter
+    @Test
+    public void testCoalescesQueuedIncrements() throws Exception {
+        CounterIncrementQueue queue = open(1000);
+        for (int i = 0; i < 500; i++) {
+            queue.increment("hot");
+        }
+        release.countDown();
+        queue.close();
+
+        assertThat(applied).containsEntry("hot", 500);
+        verify(changes, atMost(2)).changed(eq("hot"), anyInt());
+    }
+}
@@ -0,0 +1,99 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.Counter;
+import CgiDemo.CounterNotFoundException;
+import CgiDemo.CrdtCounterService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CrdtCounterServiceTests {
+
+    // Concurrent changes on two nodes add up once their states are exchanged, in any order and repeatedly
+    @Test
+    public void testConcurrentChangesConverge() {
+        CrdtCounterService a = new CrdtCounterService("a", List.of("http://b"));
+        CrdtCounterService b = new CrdtCounterService("b", List.of("http://a"));
+        a.save(new Counter("shared", 5));
+        b.merge(a.state(null));
+
+        a.increaseCounter("shared");
+        a.increaseCounter("shared");
+        b.increaseCounter("shared");
+        b.deleteCounter("shared");
+        b.deleteCounter("shared");
+
+        List<CrdtCounterService.Merged> merged = b.merge(a.state(null));
+        assertThat(merged).containsExactly(new CrdtCounterService.Merged("shared", 4, 6));
+        a.merge(b.state(null));
+        assertThat(b.merge(a.state(null))).isEmpty();
+
+        assertThat(a.findById("shared").getCount()).isEqualTo(6);
+        assertThat(b.findById("shared").getCount()).isEqualTo(6);
+    }
+
+    // A counter exists while its merged count is positive; creating it again adds the difference
+    @Test
+    public void testRemoveAndRecreate() {
+        CrdtCounterService a = new CrdtCounterService("a", List.of("http://b"));
+        CrdtCounterService b = new CrdtCounterService("b", List.of("http://a"));
+        a.save(new Counter("gone", 1));
+        b.merge(a.state(null));
+        b.deleteCounter("gone");
+        a.merge(b.state(null));
+
+        assertThrows(CounterNotFoundException.class, () -> a.findById("gone"));
+        assertThrows(CounterNotFoundException.class, () -> a.increaseCounter("gone"));
+        assertThat(a.findAll()).isEmpty();
+
+        a.save(new Counter("gone", 3));
+        b.merge(a.state(null));
+        assertThat(b.findById("gone").getCount()).isEqualTo(3);
+    }
+
+    // Deletes on two nodes can take a count below zero; saving it again still sets the saved count
+    @Test
+    public void testSaveAfterConcurrentDeletes() {
+        CrdtCounterService a = new CrdtCounterService("a", List.of("http://b"));
+        CrdtCounterService b = new CrdtCounterService("b", List.of("http://a"));
+        a.save(new Counter("twice", 1));
+        b.merge(a.state(null));
+        a.deleteCounter("twice");
+        b.deleteCounter("twice");
+        a.merge(b.state(null));
+
+        a.save(new Counter("twice", 3));
+        assertThat(a.findById("twice").getCount()).isEqualTo(3);
+        b.merge(a.state(null));
+        assertThat(b.findById("twice").getCount()).isEqualTo(3);
+    }
+
+    // Each peer gets the counters changed since its last push; failed pushes are retried
+    @Test
+    public void testChangedCountersPerPeer() {
+        CrdtCounterService a = new CrdtCounterService("a", List.of("http://b", "http://c"));
+        a.save(new Counter("x", 1));
+        a.save(new Counter("y", 1));
+
+        List<String> forB = a.takeChanged("http://b");
+        assertThat(forB).containsExactlyInAnyOrder("x", "y");
+        assertThat(a.takeChanged("http://b")).isEmpty();
+        a.retainChanged("http://b", forB);
+        assertThat(a.takeChanged("http://b")).containsExactlyInAnyOrder("x", "y");
+        assertThat(a.takeChanged("http://c")).containsExactlyInAnyOrder("x", "y");
+    }
+
+    // Largest first, by name among equal counts; removed counters are not ranked
+    @Test
+    public void testTopCounters() {
+        CrdtCounterService service = new CrdtCounterService("a", List.of());
+        service.saveAll(List.of(new Counter("a", 3), new Counter("b", 7), new Counter("c", 3), new Counter("d", 1)));
+        service.deleteCounter("d");
+
+        assertThat(service.top(3)).containsExactly(new Counter("b", 7), new Counter("a", 3), new Counter("c", 3));
+        assertThat(service.top(10)).hasSize(3);
+    }
+}
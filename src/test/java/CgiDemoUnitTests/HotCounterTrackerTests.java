@@ -0,0 +1,60 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.HotCounterTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HotCounterTrackerTests {
+
+    // A few heavy names stand out of a long tail of names seen once or twice
+    @Test
+    public void testTopNamesAmongLongTail() {
+        HotCounterTracker tracker = new HotCounterTracker(3, 1024);
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                tracker.record("tail" + (round * 50 + i) % 5000);
+            }
+            for (int i = 0; i < 30; i++) {
+                tracker.record("hot1");
+            }
+            for (int i = 0; i < 20; i++) {
+                tracker.record("hot2");
+            }
+            for (int i = 0; i < 10; i++) {
+                tracker.record("hot3");
+            }
+        }
+
+        List<HotCounterTracker.Entry> top = tracker.top();
+        assertThat(top).extracting(HotCounterTracker.Entry::name).containsExactly("hot1", "hot2", "hot3");
+    }
+
+    // Count-min estimates never undercount until the sketch ages
+    @Test
+    public void testEstimateIsUpperBound() {
+        HotCounterTracker tracker = new HotCounterTracker(2, 64);
+        for (int i = 0; i < 100; i++) {
+            tracker.record("a");
+            tracker.record("b" + i);
+        }
+        assertThat(tracker.estimate("a")).isGreaterThanOrEqualTo(100);
+        assertThat(tracker.top()).extracting(HotCounterTracker.Entry::name).startsWith("a");
+    }
+
+    // After a sample of records every cell is halved, so a name that went quiet drops out of the ranking
+    @Test
+    public void testOldTrafficDecays() {
+        HotCounterTracker tracker = new HotCounterTracker(1, 16);
+        for (int i = 0; i < 150; i++) {
+            tracker.record("old");
+        }
+        for (int i = 0; i < 1000; i++) {
+            tracker.record("new");
+        }
+        assertThat(tracker.top()).extracting(HotCounterTracker.Entry::name).containsExactly("new");
+        assertThat(tracker.estimate("old")).isLessThan(150);
+    }
+}
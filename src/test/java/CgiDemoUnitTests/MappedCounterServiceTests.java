@@ -0,0 +1,133 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.Counter;
+import CgiDemo.CounterAggregate;
+import CgiDemo.CounterNotFoundException;
+import CgiDemo.CounterRange;
+import CgiDemo.MappedCounterService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedCounterServiceTests {
+
+    @TempDir
+    private Path dir;
+
+    // Concurrent increments and decrements are single CAS operations and never lost
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        MappedCounterService service = new MappedCounterService("", 1024, 16);
+        service.save(new Counter("up", 1));
+        service.save(new Counter("down", 4001));
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 4000; i++) {
+            clients.execute(() -> service.increaseCounter("up"));
+            clients.execute(() -> service.deleteCounter("down"));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(service.findById("up").getCount()).isEqualTo(4001);
+        assertThat(service.findById("down").getCount()).isEqualTo(1);
+
+        service.deleteCounter("down");
+        assertThrows(CounterNotFoundException.class, () -> service.findById("down"));
+        assertThrows(CounterNotFoundException.class, () -> service.increaseCounter("down"));
+        assertThat(service.findAll()).containsExactly(new Counter("up", 4001));
+    }
+
+    // Names that collide in the table are told apart, and a removed name can be created again
+    @Test
+    public void testCollisionsAndRecreate() throws Exception {
+        MappedCounterService service = new MappedCounterService("", 4, 16);
+        service.save(new Counter("Aa", 1));
+        service.save(new Counter("BB", 2)); // same String hash code as "Aa"
+        service.save(new Counter("c", 3));
+
+        assertThat(service.findById("Aa").getCount()).isEqualTo(1);
+        assertThat(service.findById("BB").getCount()).isEqualTo(2);
+
+        service.deleteCounter("Aa");
+        assertThrows(CounterNotFoundException.class, () -> service.findById("Aa"));
+        assertThat(service.findById("BB").getCount()).isEqualTo(2);
+
+        service.save(new Counter("Aa", 7));
+        assertThat(service.findById("Aa").getCount()).isEqualTo(7);
+
+        service.save(new Counter("d", 4));
+        assertThrows(IllegalStateException.class, () -> service.save(new Counter("e", 5)));
+        assertThrows(IllegalArgumentException.class, () -> service.save(new Counter("a".repeat(17), 1)));
+    }
+
+    // Batches apply deltas, create missing counters when asked and remove depleted ones
+    @Test
+    public void testIncreaseCounters() throws Exception {
+        MappedCounterService service = new MappedCounterService("", 1024, 16);
+        service.save(new Counter("a", 5));
+        service.save(new Counter("b", 2));
+
+        Map<String, Integer> counts = service.increaseCounters(Map.of("a", 3, "b", -2, "c", 4, "d", 1), false);
+        assertThat(counts).containsExactlyInAnyOrderEntriesOf(Map.of("a", 8, "b", 0));
+
+        counts = service.increaseCounters(Map.of("c", 4), true);
+        assertThat(counts).containsEntry("c", 4);
+        assertThat(service.findAll()).containsExactlyInAnyOrder(new Counter("a", 8), new Counter("c", 4));
+    }
+
+    // Counters survive reopening the same file
+    @Test
+    public void testCountersArePersisted() throws Exception {
+        String file = dir.resolve("counters.dat").toString();
+        MappedCounterService service = new MappedCounterService(file, 64, 16);
+        service.save(new Counter("kept", 1));
+        service.increaseCounter("kept");
+
+        MappedCounterService reopened = new MappedCounterService(file, 64, 16);
+        assertThat(reopened.findById("kept").getCount()).isEqualTo(2);
+        assertThrows(IllegalStateException.class, () -> new MappedCounterService(file, 128, 16));
+    }
+
+    // Ranges skip removed counters and survive a reopen, which rebuilds the name index
+    @Test
+    public void testRangesInNameOrder() throws Exception {
+        String file = dir.resolve("ranges.dat").toString();
+        MappedCounterService service = new MappedCounterService(file, 64, 16);
+        for (String name : List.of("svc.c", "svc.a", "svcx", "svc.b", "other")) {
+            service.save(new Counter(name, 2));
+        }
+        service.increaseCounters(Map.of("svc.b", -2), false);
+
+        CounterRange prefix = CounterRange.prefix("svc.");
+        assertThat(service.range(prefix, null, 10)).extracting(Counter::getName).containsExactly("svc.a", "svc.c");
+        assertThat(service.range(prefix, null, 1)).extracting(Counter::getName).containsExactly("svc.a");
+        assertThat(service.range(prefix, "svc.a", 1)).extracting(Counter::getName).containsExactly("svc.c");
+        assertThat(service.aggregate(prefix)).isEqualTo(new CounterAggregate(2, 4));
+
+        MappedCounterService reopened = new MappedCounterService(file, 64, 16);
+        assertThat(reopened.range(new CounterRange("svc.b", null), null, 10))
+                .extracting(Counter::getName).containsExactly("svc.c", "svcx");
+        assertThat(reopened.aggregate(CounterRange.ALL)).isEqualTo(new CounterAggregate(4, 8));
+    }
+
+    // Largest first, by name among equal counts
+    @Test
+    public void testTopCounters() throws Exception {
+        MappedCounterService service = new MappedCounterService("", 64, 16);
+        service.saveAll(List.of(new Counter("a", 3), new Counter("b", 7), new Counter("c", 3), new Counter("d", 1)));
+        service.deleteCounter("b");
+
+        assertThat(service.top(3)).containsExactly(new Counter("b", 6), new Counter("a", 3), new Counter("c", 3));
+        assertThat(service.top(10)).hasSize(4);
+    }
+}
@@ -0,0 +1,86 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.RateWindow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateWindowTests {
+
+    private static final long START = 1_800_000_000L / 60 * 60;
+
+    // Sums only cover the requested trailing buckets
+    @Test
+    public void testSumsOverTrailingBuckets() {
+        RateWindow window = new RateWindow(START);
+        for (int second = 0; second < 30; second++) {
+            window.record(START + second, 2);
+        }
+        long now = START + 29;
+        assertThat(window.sumSeconds(now, 1)).isEqualTo(2);
+        assertThat(window.sumSeconds(now, 10)).isEqualTo(20);
+        assertThat(window.sumSeconds(now, 60)).isEqualTo(60);
+        assertThat(window.sumMinutes(now, 1)).isEqualTo(60);
+    }
+
+    // Buckets are reused once their slot comes around again, dropping what they held
+    @Test
+    public void testOldBucketsAreEvicted() {
+        RateWindow window = new RateWindow(START);
+        window.record(START, 5);
+        window.record(START + 60, 1);
+        assertThat(window.sumSeconds(START + 60, 60)).isEqualTo(1);
+        assertThat(window.sumMinutes(START + 60, 2)).isEqualTo(6);
+
+        // The first minute's slot now holds the minute an hour later
+        window.record(START + 3600, 1);
+        assertThat(window.sumMinutes(START + 3600, 60)).isEqualTo(2);
+        assertThat(window.sumMinutes(START + 3600, 1)).isEqualTo(1);
+    }
+
+    // Completed minutes are drained once, the current one only after it completed
+    @Test
+    public void testDrainCompletedMinutes() {
+        RateWindow window = new RateWindow(START);
+        window.record(START, 3);
+        window.record(START + 61, 4);
+
+        List<long[]> drained = new ArrayList<>();
+        long last = window.undrainedMinutes(START + 61, (minute, count) -> drained.add(new long[] {minute, count}));
+        assertThat(drained).containsExactly(new long[] {START / 60, 3});
+        window.markDrained(last);
+        assertThat(window.sumUndrained(START + 61)).isEqualTo(4);
+
+        drained.clear();
+        window.undrainedMinutes(START + 61, (minute, count) -> drained.add(new long[] {minute, count}));
+        assertThat(drained).isEmpty();
+        assertThat(window.isIdle(START + 61 + 3600, 3600)).isFalse();
+
+        last = window.undrainedMinutes(START + 125, (minute, count) -> drained.add(new long[] {minute, count}));
+        window.markDrained(last);
+        assertThat(drained).containsExactly(new long[] {START / 60 + 1, 4});
+        assertThat(window.isIdle(START + 61 + 3601, 3600)).isTrue();
+    }
+
+    // Concurrent recorders starting new buckets lose no increments
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        RateWindow window = new RateWindow(START);
+        ExecutorService recorders = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            long second = START + i / 1000;
+            recorders.execute(() -> window.record(second, 1));
+        }
+        recorders.shutdown();
+        assertThat(recorders.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(window.sumSeconds(START + 7, 8)).isEqualTo(8000);
+        assertThat(window.sumMinutes(START + 7, 1)).isEqualTo(8000);
+    }
+}
@@ -0,0 +1,192 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.Counter;
+import CgiDemo.CounterAggregate;
+import CgiDemo.CounterNotFoundException;
+import CgiDemo.CounterRange;
+import CgiDemo.CounterThreads;
+import CgiDemo.WalCounterService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WalCounterServiceTests {
+
+    @TempDir
+    private Path dir;
+
+    // Every acknowledged change is rebuilt from the log after a restart
+    @Test
+    public void testStateIsRecoveredFromLog() throws Exception {
+        WalCounterService service = open(DataSize.ofMegabytes(64));
+        service.save(new Counter("up", 1));
+        service.save(new Counter("down", 3));
+        service.save(new Counter("gone", 1));
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            clients.execute(() -> service.increaseCounter("up"));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        service.deleteCounter("down");
+        service.deleteCounter("gone");
+        service.increaseCounters(Map.of("down", 5, "batch", 2), true);
+        service.saveAll(List.of(new Counter("imported", 4), new Counter("batch", 3)));
+        service.close();
+
+        WalCounterService recovered = open(DataSize.ofMegabytes(64));
+        assertThat(recovered.findAll()).containsExactlyInAnyOrder(
+                new Counter("up", 1001), new Counter("down", 7), new Counter("batch", 3), new Counter("imported", 4));
+        assertThrows(CounterNotFoundException.class, () -> recovered.findById("gone"));
+        recovered.close();
+    }
+
+    // Small segments force snapshots; recovery combines the latest snapshot with the log tail
+    @Test
+    public void testSnapshotsBoundTheLog() throws Exception {
+        WalCounterService service = open(DataSize.ofBytes(4096));
+        for (int i = 0; i < 200; i++) {
+            service.save(new Counter("counter" + i, i + 1));
+        }
+        for (int i = 0; i < 2000; i++) {
+            service.increaseCounter("counter" + (i % 200));
+        }
+        service.close();
+
+        assertThat(files(".snap")).hasSize(1);
+        assertThat(files(".log").size()).isLessThan(5);
+
+        WalCounterService recovered = open(DataSize.ofBytes(4096));
+        assertThat(recovered.findAll()).hasSize(200);
+        assertThat(recovered.findById("counter0").getCount()).isEqualTo(11);
+        assertThat(recovered.findById("counter199").getCount()).isEqualTo(210);
+        recovered.close();
+    }
+
+    // Snapshots copy the map while writers keep going; records the copy already holds replay harmlessly
+    @Test
+    public void testSnapshotsTakenDuringWrites() throws Exception {
+        WalCounterService service = open(DataSize.ofBytes(4096));
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            String name = "counter" + (i % 50);
+            clients.execute(() -> service.increaseCounters(Map.of(name, 1), true));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        service.close();
+
+        WalCounterService recovered = open(DataSize.ofBytes(4096));
+        assertThat(recovered.findAll()).hasSize(50).allSatisfy(counter -> assertThat(counter.getCount()).isEqualTo(160));
+        recovered.close();
+    }
+
+    // A record torn by a crash mid-write is discarded together with everything after it
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        WalCounterService service = open(DataSize.ofMegabytes(64));
+        service.save(new Counter("torn", 1));
+        service.increaseCounter("torn");
+        service.close();
+
+        Path segment = files(".log").get(files(".log").size() - 1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        WalCounterService recovered = open(DataSize.ofMegabytes(64));
+        assertThat(recovered.findById("torn").getCount()).isEqualTo(1);
+        recovered.increaseCounter("torn");
+        recovered.close();
+
+        WalCounterService again = open(DataSize.ofMegabytes(64));
+        assertThat(again.findById("torn").getCount()).isEqualTo(2);
+        again.close();
+    }
+
+    // A name too long for a record is refused before it reaches the log, so the log still replays
+    @Test
+    public void testOverlongNameIsRejected() throws Exception {
+        String longName = "x".repeat(Short.MAX_VALUE + 1);
+        WalCounterService service = open(DataSize.ofMegabytes(64));
+        service.save(new Counter("kept", 1));
+        assertThrows(IllegalArgumentException.class, () -> service.save(new Counter(longName, 1)));
+        assertThrows(IllegalArgumentException.class, () -> service.saveAll(List.of(new Counter("batch", 1), new Counter(longName, 1))));
+        assertThrows(IllegalArgumentException.class, () -> service.increaseCounters(Map.of(longName, 1), true));
+        service.save(new Counter("ä".repeat(Short.MAX_VALUE / 2), 2));
+        service.close();
+
+        WalCounterService recovered = open(DataSize.ofMegabytes(64));
+        assertThat(recovered.findAll()).extracting(Counter::getCount).containsExactlyInAnyOrder(1, 2);
+        assertThrows(CounterNotFoundException.class, () -> recovered.findById("batch"));
+        recovered.close();
+    }
+
+    // Ranges are views of the sorted counters map
+    @Test
+    public void testRangesInNameOrder() throws Exception {
+        WalCounterService service = open(DataSize.ofMegabytes(64));
+        for (String name : List.of("svc.c", "svc.a", "svcx", "svc.b", "other")) {
+            service.save(new Counter(name, 2));
+        }
+        service.increaseCounters(Map.of("svc.b", -2), false);
+
+        CounterRange prefix = CounterRange.prefix("svc.");
+        assertThat(service.range(prefix, null, 10)).extracting(Counter::getName).containsExactly("svc.a", "svc.c");
+        assertThat(service.range(prefix, "svc.a", 1)).extracting(Counter::getName).containsExactly("svc.c");
+        assertThat(service.range(prefix, "svc.c", 1)).isEmpty();
+        assertThat(service.range(new CounterRange("p", null), null, 10))
+                .extracting(Counter::getName).containsExactly("svc.a", "svc.c", "svcx");
+        assertThat(service.aggregate(prefix)).isEqualTo(new CounterAggregate(2, 4));
+        assertThat(service.aggregate(CounterRange.prefix("none"))).isEqualTo(new CounterAggregate(0, 0));
+        service.close();
+    }
+
+    // The ranking follows every change and is rebuilt on recovery
+    @Test
+    public void testTopFollowsChanges() throws Exception {
+        WalCounterService service = open(DataSize.ofMegabytes(64));
+        service.save(new Counter("first", 3));
+        service.save(new Counter("second", 2));
+        service.save(new Counter("third", 2));
+        service.increaseCounter("third");
+        service.increaseCounter("third");
+        service.deleteCounter("first");
+        service.increaseCounters(Map.of("second", -2, "fourth", 1), true);
+
+        assertThat(service.top(10)).containsExactly(new Counter("third", 4), new Counter("first", 2),
+                new Counter("fourth", 1));
+        assertThat(service.top(1)).containsExactly(new Counter("third", 4));
+        service.close();
+
+        WalCounterService recovered = open(DataSize.ofMegabytes(64));
+        assertThat(recovered.top(2)).containsExactly(new Counter("third", 4), new Counter("first", 2));
+        recovered.close();
+    }
+
+    private WalCounterService open(DataSize snapshotAfter) throws IOException {
+        return new WalCounterService(new CounterThreads(false), dir.toString(), true, snapshotAfter);
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package CgiDemoUnitTests;
+
+import CgiDemo.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(classes = CgiDemoApplication.class, properties = {
+        "counter.engine=write-behind",
+        "counter.write-behind.flush-interval=1h",
+        "counter.write-behind.max-unflushed-delta=1000"
+})
+public class WriteBehindCounterServiceTests {
+
+    @Autowired
+    private WriteBehindCounterService service;
+
+    @Autowired
+    private CounterRepository repository;
+
+    // Increments are visible to readers before they are flushed
+    @Test
+    public void testPendingIncrementsAreMergedIntoReads() {
+        service.save(new Counter("pending", 1));
+
+        service.increaseCounter("pending");
+        service.increaseCounter("pending");
+
+        assertThat(repository.findById("pending").orElseThrow().getCount()).isEqualTo(1);
+        assertThat(service.findById("pending").getCount()).isEqualTo(3);
+        assertThat(service.findAll()).contains(new Counter("pending", 3));
+
+        service.flush();
+        assertThat(repository.findById("pending").orElseThrow().getCount()).isEqualTo(3);
+        assertThat(service.findById("pending").getCount()).isEqualTo(3);
+    }
+
+    // Reaching the max unflushed delta forces a flush
+    @Test
+    public void testMaxUnflushedDeltaTriggersFlush() throws Exception {
+        service.save(new Counter("bounded", 0));
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 4000; i++) {
+            clients.execute(() -> service.increaseCounter("bounded"));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(repository.findById("bounded").orElseThrow().getCount()).isGreaterThanOrEqualTo(3000);
+        assertThat(service.findById("bounded").getCount()).isEqualTo(4000);
+    }
+
+    @Test
+    public void testIncreaseCounterNotFound() {
+        assertThrows(CounterNotFoundException.class, () -> service.increaseCounter("nonexistent"));
+    }
+
+    // Deleting flushes the pending delta first so the decrement applies to the real value
+    @Test
+    public void testDeleteCounterAfterPendingIncrements() {
+        service.save(new Counter("shortLived", 1));
+        service.increaseCounter("shortLived");
+
+        service.deleteCounter("shortLived");
+        assertThat(service.findById("shortLived").getCount()).isEqualTo(1);
+
+        service.deleteCounter("shortLived");
+        assertThrows(CounterNotFoundException.class, () -> service.findById("shortLived"));
+        assertThrows(CounterNotFoundException.class, () -> service.increaseCounter("shortLived"));
+    }
+
+    // An increment racing with the delete that removes the counter is either counted before it or rejected
+    @Test
+    public void testIncrementsRacingWithRemoval() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            String name = "racing" + round;
+            service.save(new Counter(name, 1));
+            AtomicInteger applied = new AtomicInteger(1);
+
+            ExecutorService clients = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 200; i++) {
+                clients.execute(() -> {
+                    try {
+                        service.increaseCounter(name);
+                        applied.incrementAndGet();
+                    } catch (CounterNotFoundException ex) {
+                        // removed before the increment
+                    }
+                });
+                clients.execute(() -> {
+                    try {
+                        service.deleteCounter(name);
+                        applied.decrementAndGet();
+                    } catch (CounterNotFoundException ex) {
+                        // removed before the delete
+                    }
+                });
+            }
+            clients.shutdown();
+            assertThat(clients.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+            service.flush();
+            int count = repository.findById(name).map(Counter::getCount).orElse(0);
+            assertThat(count).isEqualTo(applied.get());
+        }
+    }
+}